@@ -0,0 +1,120 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.parallel.PasswordsRoot;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end runs on a synthetic word list: the sequential program against the actor
+ * system and the fork/join program for a growing number of actors, resp. threads. Half of the users cannot be cracked, so every
+ * run walks the complete word list.
+ * <p>
+ * The result file (the sequential baseline, then one row per engine and value of <code>actors</code>)
+ * is the data of the scaling graph <code>img/pwd-crack-graph.svg</code>. Pass e.g.
+ * <code>-p actors=1,2,4,8,16</code> to JMH to match the cores of the host.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class EngineBenchmark {
+
+	/**
+	 * The synthetic files, generated once per trial.
+	 */
+	@State(Scope.Benchmark)
+	public static class Data {
+
+		@Param({"500000"})
+		public int words;
+
+		@Param({"20"})
+		public int users;
+
+		@Param({"scalar", "vector"})
+		public String kernel;
+
+		private Path directory;
+		private SyntheticData data;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			directory = Files.createTempDirectory("crack-bench");
+			data = SyntheticData.generate(directory, words, users);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			Files.deleteIfExists(data.cleartextPasswords());
+			Files.deleteIfExists(data.hashedPasswords());
+			Files.deleteIfExists(directory);
+		}
+
+		String hashedPasswords() {
+			return data.hashedPasswords().toString();
+		}
+
+		String cleartextPasswords() {
+			return data.cleartextPasswords().toString();
+		}
+	}
+
+	@Benchmark
+	public void sequential(Data data) {
+		ch.bfh.akka.crack.sequential.CrackPasswords.main(new String[] {data.hashedPasswords(), data.cleartextPasswords(),
+				"--kernel=" + data.kernel});
+	}
+
+	/**
+	 * The actor system and the fork/join program, once per number of actors, resp. of pool
+	 * threads. A class of its own so that the
+	 * sequential baseline does not run once per value of <code>actors</code>.
+	 */
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+	@State(Scope.Benchmark)
+	public static class Actors {
+
+		@Param({"1", "2", "4", "8"})
+		public int actors;
+
+		@Benchmark
+		public void actorSystem(Data data) {
+			PasswordsRoot.InitMessage init = new PasswordsRoot.InitMessage(actors, data.hashedPasswords(),
+					data.cleartextPasswords(), Cracker.Kernel.of(data.kernel), null, null, null, false);
+			ch.bfh.akka.crack.parallel.CrackPasswords.start(init, actors, 2, 0)
+					.getWhenTerminated().toCompletableFuture().join();
+		}
+
+		@Benchmark
+		public void forkJoin(Data data) {
+			ch.bfh.akka.crack.sequential.ParallelCrackPasswords.main(new String[] {data.hashedPasswords(),
+					data.cleartextPasswords(), "--threads=" + actors, "--kernel=" + data.kernel});
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.bench;
+
+import ch.bfh.akka.crack.common.HashKernel;
+import ch.bfh.akka.crack.common.VectorSha512;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of one hash of <code>password + salt</code>: the original String based
+ * <code>hash()</code> against the allocation-free {@link HashKernel} and the multi-buffer
+ * {@link VectorSha512}, on one thread and on all available threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class HashBenchmark {
+
+	private static final int CANDIDATES = 1024;
+	private static final int VECTOR_BATCH = 8; // Candidates per vector invocation, a multiple of the lanes
+
+
+	private final String salt = "98987";
+	private final byte[] saltBytes = salt.getBytes(StandardCharsets.UTF_8);
+	private String[] passwords;
+	private byte[][] passwordBytes;
+	private HashKernel kernel;
+	private VectorSha512 vector;
+	private final byte[] vectorOut = new byte[64];
+	private int next = 0;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException {
+		Random random = new Random(42);
+		passwords = new String[CANDIDATES];
+		passwordBytes = new byte[CANDIDATES][];
+		for (int i = 0; i < CANDIDATES; i++) {
+			passwords[i] = SyntheticData.randomWord(random);
+			passwordBytes[i] = passwords[i].getBytes(StandardCharsets.UTF_8);
+		}
+		kernel = new HashKernel(HashKernel.SHA_512);
+		vector = new VectorSha512();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public String legacyHashSingleThread() throws NoSuchAlgorithmException {
+		return legacyHash();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String legacyHashAllThreads() throws NoSuchAlgorithmException {
+		return legacyHash();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public byte[] kernelSingleThread() {
+		return kernelHash();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public byte[] kernelAllThreads() {
+		return kernelHash();
+	}
+
+	@Benchmark
+	@Threads(1)
+	@OperationsPerInvocation(VECTOR_BATCH)
+	public byte[] vectorSingleThread() {
+		return vectorHash();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	@OperationsPerInvocation(VECTOR_BATCH)
+	public byte[] vectorAllThreads() {
+		return vectorHash();
+	}
+
+	private String legacyHash() throws NoSuchAlgorithmException {
+		String password = passwords[next++ & (CANDIDATES - 1)];
+		return HashKernel.hash(HashKernel.SHA_512, password + salt);
+	}
+
+	private byte[] kernelHash() {
+		byte[] password = passwordBytes[next++ & (CANDIDATES - 1)];
+		return kernel.digest(password, 0, password.length, saltBytes);
+	}
+
+	private byte[] vectorHash() {
+		int lanes = vector.lanes();
+		for (int i = 0; i < VECTOR_BATCH; i++) {
+			byte[] password = passwordBytes[next++ & (CANDIDATES - 1)];
+			vector.load(i % lanes, password, 0, password.length, saltBytes);
+			if (i % lanes == lanes - 1) {
+				vector.compute();
+				vector.digest(0, vectorOut); // The digests are read like the cracker does
+			}
+		}
+		return vectorOut;
+	}
+}
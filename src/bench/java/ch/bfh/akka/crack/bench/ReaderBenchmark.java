@@ -0,0 +1,117 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.bench;
+
+import ch.bfh.akka.crack.common.MappedWordlist;
+import ch.bfh.akka.crack.common.Shard;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading the word list: the original <code>readFile</code> (whole file into a
+ * <code>LinkedList</code>) and <code>readFileRange</code> (skip lines up to a range),
+ * against the memory-mapped {@link MappedWordlist}. The range benchmarks read the
+ * last quarter of the file, which is the worst case of <code>readFileRange</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+
+	@Param({"1000000"})
+	public int words;
+
+	private Path directory;
+	private String fileName;
+	private MappedWordlist wordlist;
+	private Shard lastQuarter;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("crack-bench");
+		fileName = SyntheticData.generate(directory, words, 2).cleartextPasswords().toString();
+		wordlist = MappedWordlist.open(fileName);
+		lastQuarter = new Shard(wordlist.alignForward(wordlist.size() / 4 * 3), wordlist.size());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (var files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Benchmark
+	public List<String> readFile() throws IOException {
+		List<String> lines = new LinkedList<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+			String line = br.readLine();
+			while (line != null) {
+				lines.add(line);
+				line = br.readLine();
+			}
+		}
+		return lines;
+	}
+
+	@Benchmark
+	public List<String> readFileRange() throws IOException {
+		// Same loop as the original PasswordsActor.readFileRange, for the last quarter of the lines
+		int startLine = words / 4 * 3;
+		int endLine = words - 1;
+		List<String> lines = new LinkedList<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = br.readLine()) != null) {
+				if (lineNumber >= startLine && lineNumber <= endLine) {
+					lines.add(line);
+				}
+				lineNumber++;
+				if (lineNumber > endLine) {
+					break;
+				}
+			}
+		}
+		return lines;
+	}
+
+	@Benchmark
+	public void mappedAll(Blackhole blackhole) throws IOException {
+		wordlist.forEach(wordlist.all(), (candidate, offset, length) -> blackhole.consume(length));
+	}
+
+	@Benchmark
+	public void mappedRange(Blackhole blackhole) throws IOException {
+		wordlist.forEach(lastQuarter, (candidate, offset, length) -> blackhole.consume(length));
+	}
+}
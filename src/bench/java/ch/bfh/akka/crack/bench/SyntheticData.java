@@ -0,0 +1,120 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.bench;
+
+import ch.bfh.akka.crack.common.HashKernel;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Generates a synthetic word list and a matching hashed passwords file, so that the
+ * benchmarks do not depend on the 5 million passwords file being present.
+ * <p>
+ * The generation is deterministic (fixed seed). Half of the users have a password taken
+ * from the word list, spread over its whole length; the other half cannot be cracked,
+ * so that the engines have to walk the complete word list.
+ */
+public final class SyntheticData {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	private final Path hashedPasswords;
+	private final Path cleartextPasswords;
+
+	private SyntheticData(Path hashedPasswords, Path cleartextPasswords) {
+		this.hashedPasswords = hashedPasswords;
+		this.cleartextPasswords = cleartextPasswords;
+	}
+
+	/**
+	 * Writes both files into a directory.
+	 *
+	 * @param directory where to write the files
+	 * @param words     number of lines of the word list
+	 * @param users     number of users of the hashed passwords file
+	 * @return the generated files
+	 * @throws IOException if the files cannot be written
+	 */
+	public static SyntheticData generate(Path directory, int words, int users) throws IOException {
+		Random random = new Random(42);
+		Path cleartext = directory.resolve("synthetic-passwords.txt");
+		Path hashed = directory.resolve("synthetic-hashed-passwords.txt");
+		String[] picked = new String[users];
+
+		try (BufferedWriter out = Files.newBufferedWriter(cleartext, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < words; i++) {
+				String word = randomWord(random);
+				// Every second user gets a word at an evenly spread position
+				int user = (int) ((long) i * users / words);
+				if (user % 2 == 0 && picked[user] == null) {
+					picked[user] = word;
+				}
+				out.write(word);
+				out.newLine();
+			}
+		}
+
+		try (BufferedWriter out = Files.newBufferedWriter(hashed, StandardCharsets.UTF_8)) {
+			for (int user = 0; user < users; user++) {
+				// A few salts only, shared by several users, as in real dumps
+				String salt = Integer.toString(user % 7);
+				String password = (picked[user] != null) ? picked[user] : "not-in-list-" + randomWord(random);
+				out.write("user" + user + "@bench.ch " + salt + " " + HashKernel.hash(HashKernel.SHA_512, password + salt));
+				out.newLine();
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Algorithm SHA 512 not available", e);
+		}
+		return new SyntheticData(hashed, cleartext);
+	}
+
+	/**
+	 * Entry point to generate the files by hand, e.g. to time the programs outside JMH.
+	 *
+	 * @param args arg[0] = directory, arg[1] = number of words, arg[2] = number of users
+	 * @throws IOException if the files cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: program-name directory nbOfWords nbOfUsers");
+			return;
+		}
+		SyntheticData data = generate(Path.of(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		System.out.println("Generated " + data.cleartextPasswords() + " and " + data.hashedPasswords());
+	}
+
+	/**
+	 * @return the generated hashed passwords file
+	 */
+	public Path hashedPasswords() {
+		return hashedPasswords;
+	}
+
+	/**
+	 * @return the generated word list
+	 */
+	public Path cleartextPasswords() {
+		return cleartextPasswords;
+	}
+
+	/**
+	 * @param random the source of randomness
+	 * @return a word of 6 to 12 lowercase letters and digits, like the usual leaked passwords
+	 */
+	static String randomWord(Random random) {
+		int length = 6 + random.nextInt(7);
+		StringBuilder word = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			word.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return word.toString();
+	}
+}
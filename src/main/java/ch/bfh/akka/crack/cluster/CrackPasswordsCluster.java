@@ -0,0 +1,129 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.cluster;
+
+import akka.actor.typed.ActorSystem;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.Options;
+import ch.bfh.akka.crack.parallel.CrackPasswords;
+import ch.bfh.akka.crack.parallel.PasswordsRoot;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Main class of the cluster mode: one JVM runs the coordinator, any number of JVMs (on
+ * the same or other machines) run worker nodes that join it and pull batches of the
+ * word list. Every node reads the files from its own disk, at the given paths.
+ * <p>
+ * On one machine, start the coordinator, then the workers, each on its own port:
+ * <pre>
+ *   CrackPasswordsCluster coordinator hashed-passwords.txt 5-million-passwords.txt
+ *   CrackPasswordsCluster worker hashed-passwords.txt 5-million-passwords.txt --port=25521
+ *   CrackPasswordsCluster worker hashed-passwords.txt 5-million-passwords.txt --port=25522
+ * </pre>
+ */
+public class CrackPasswordsCluster {
+
+	// Name of the actor system, the same on every node of the cluster
+	private static final String SYSTEM_NAME = "CrackPasswordsCluster";
+	private static final String DEFAULT_SEED = "127.0.0.1:25520";
+
+	/**
+	 * Entry point of a node of the cluster.
+	 *
+	 * @param args arg[0] = <code>coordinator</code> or <code>worker</code>, arg[1] = file name of hashed passwords,
+	 *             arg[2] = file name of cleartext passwords, followed by the options listed by the usage
+	 */
+	public static void main(String[] args) {
+		Options options = Options.parse(args);
+		List<String> positional = options.positional();
+		if (positional.size() != 3 || !List.of("coordinator", "worker").contains(positional.get(0))) {
+			usage();
+			return;
+		}
+		boolean coordinator = positional.get(0).equals("coordinator");
+		String hashedPasswords = positional.get(1);
+		String cleartextPasswords = positional.get(2);
+		String seed = options.get("seed", DEFAULT_SEED);
+		String rules = options.get("rules", "");
+
+		int port;
+		int computeThreads;
+		int ioThreads;
+		int nbActors;
+		int progressSeconds;
+		Cracker.Kernel kernel;
+		try {
+			// The coordinator is the seed node, the workers take a free port unless told otherwise
+			port = options.getInt("port", coordinator ? Integer.parseInt(seed.substring(seed.lastIndexOf(':') + 1)) : 0);
+			computeThreads = options.getInt("compute-threads", 0);
+			computeThreads = (computeThreads <= 0) ? Runtime.getRuntime().availableProcessors() : computeThreads;
+			ioThreads = options.getInt("io-threads", 2);
+			String actors = options.get("actors", "auto");
+			nbActors = actors.equals("auto") ? computeThreads : Math.min(Integer.parseInt(actors), computeThreads);
+			kernel = Cracker.Kernel.of(options.get("kernel", "scalar"));
+			progressSeconds = options.getInt("progress", 10);
+		} catch (IllegalArgumentException e) { // Includes NumberFormatException
+			usage();
+			return;
+		}
+		if (nbActors <= 0 || ioThreads <= 0 || progressSeconds < 0) {
+			usage();
+			return;
+		}
+		String unavailable = kernel.unavailableReason();
+		if (unavailable != null) {
+			System.out.println("--> Vector kernel not available (" + unavailable + "), using the scalar kernel");
+			kernel = Cracker.Kernel.SCALAR;
+		}
+
+		Config config = ConfigFactory.parseMap(Map.of(
+				"akka.remote.artery.canonical.hostname", options.get("hostname", "127.0.0.1"),
+				"akka.remote.artery.canonical.port", port,
+				"akka.cluster.seed-nodes", List.of("akka://" + SYSTEM_NAME + "@" + seed),
+				CrackPasswords.COMPUTE_DISPATCHER + ".thread-pool-executor.fixed-pool-size", computeThreads,
+				CrackPasswords.IO_DISPATCHER + ".thread-pool-executor.fixed-pool-size", ioThreads,
+				CrackPasswords.PROGRESS_INTERVAL, progressSeconds + "s"
+		)).withFallback(ConfigFactory.load("cluster"));
+
+		if (coordinator) {
+			String checkpoint = options.get("checkpoint", "");
+			String cache = options.get("cache", "");
+			ActorSystem<PasswordsRoot.Message> system = ActorSystem.create(PasswordsRoot.createCoordinator(), SYSTEM_NAME, config);
+			// No local actors: the PasswordsActors are spawned by the worker nodes
+			system.tell(new PasswordsRoot.InitMessage(0, hashedPasswords, cleartextPasswords, kernel,
+					rules.isEmpty() ? null : rules, checkpoint.isEmpty() ? null : checkpoint,
+					cache.isEmpty() ? null : cache, false));
+			System.out.println("--> Coordinator started on port " + port);
+		} else {
+			ActorSystem.create(WorkerNode.create(nbActors, hashedPasswords, cleartextPasswords, kernel,
+					rules.isEmpty() ? null : rules), SYSTEM_NAME, config);
+			System.out.println("--> Worker node started with " + nbActors + " actors, joining " + seed);
+		}
+	}
+
+	// Helper method to print usage instructions if the user inputs incorrect arguments
+	private static void usage() {
+		System.err.println("""
+                Usage: program-name coordinator|worker fileNameHashedPasswords fileNameCleartextPasswords [options]
+                    where fileNameCleartextPasswords may be a mask instead, e.g. mask:?u?l?l?l?d?d
+                Options:
+                    --seed=host:port     address of the coordinator (default: 127.0.0.1:25520)
+                    --hostname=H         address of this node (default: 127.0.0.1)
+                    --port=P             port of this node (default: the seed port for the coordinator, any for a worker)
+                    --actors=N|auto      actors of a worker node, bounded by the compute threads (default: auto)
+                    --compute-threads=N  threads of the hashing dispatcher (default: available processors)
+                    --io-threads=N       threads of the file reading dispatcher (default: 2)
+                    --kernel=K           SHA-512 kernel of a worker node, scalar or vector (default: scalar)
+                    --rules=file         mangling rules, the same file on every node (default: none)
+                    --checkpoint=file    checkpoint of the coordinator (default: none)
+                    --cache=file         credential cache of the coordinator (default: none)
+                    --progress=N         progress report of the coordinator every N seconds, 0 for never (default: 10)
+                """);
+	}
+}
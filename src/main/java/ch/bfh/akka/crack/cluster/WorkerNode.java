@@ -0,0 +1,176 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.cluster;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.Signal;
+import akka.actor.typed.Terminated;
+import akka.actor.typed.javadsl.AbstractOnMessageBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.receptionist.Receptionist;
+import ch.bfh.akka.crack.common.CrackMetrics;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.RuleSet;
+import ch.bfh.akka.crack.common.TargetIndex;
+import ch.bfh.akka.crack.parallel.CrackPasswords;
+import ch.bfh.akka.crack.parallel.MeteredMailbox;
+import ch.bfh.akka.crack.parallel.PasswordsActor;
+import ch.bfh.akka.crack.parallel.PasswordsRoot;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The guardian of a worker node of the cluster.
+ * It reads its local copy of the hashed passwords (and rules), looks the coordinator up
+ * through the receptionist, then spawns the PasswordsActors of this node. From then on the
+ * actors pull their batches from the coordinator and send the found passwords to it, exactly
+ * like in a single JVM; the word list is read locally from the same path on every node.
+ * <p>
+ * The actors record their batches in the {@link CrackMetrics} of this node, readable over JMX;
+ * the progress of the whole job is reported by the coordinator.
+ * <p>
+ * The node shuts down once all its actors have stopped, or if the coordinator disappears.
+ */
+public class WorkerNode extends AbstractOnMessageBehavior<WorkerNode.Message> {
+
+	private final int nbActors; // Number of PasswordsActors of this node
+	private final String cleartextPasswords; // File name of the local word list
+	private final Cracker.Kernel kernel; // SHA-512 kernel of the actors
+	private final CrackMetrics metrics = new CrackMetrics(); // Counters of the actors of this node
+	private TargetIndex targets; // The local target index, once loaded
+	private RuleSet rules; // The mangling rules, null for none
+	private ActorRef<PasswordsRoot.Message> coordinator; // The coordinator, once found
+	private int nbActorsRunning = 0; // Actors spawned and not stopped yet
+	private boolean started = false; // Set once the actors are spawned
+
+	/**
+	 * Interface representing the messages exchanged with the worker node guardian.
+	 */
+	public interface Message {}
+
+	// Message to self once the files have been read on the I/O dispatcher
+	private record LoadedMessage(TargetIndex targets, List<String> malformed, RuleSet rules,
+								 Throwable failure) implements Message {}
+
+	// The coordinators registered with the receptionist, adapted from Receptionist.Listing
+	private record ListingMessage(Receptionist.Listing listing) implements Message {}
+
+	/**
+	 * Static factory method to create the guardian of a worker node.
+	 *
+	 * @param nbActors           number of PasswordsActors on this node
+	 * @param hashedPasswords    file name of the local hashed passwords
+	 * @param cleartextPasswords file name of the local word list
+	 * @param kernel             SHA-512 kernel of the actors
+	 * @param rules              file name of the mangling rules, null for none
+	 * @return the behavior of the guardian
+	 */
+	public static Behavior<Message> create(int nbActors, String hashedPasswords, String cleartextPasswords,
+										   Cracker.Kernel kernel, String rules) {
+		return Behaviors.setup(context -> new WorkerNode(context, nbActors, hashedPasswords, cleartextPasswords, kernel, rules));
+	}
+
+	private WorkerNode(ActorContext<Message> context, int nbActors, String hashedPasswords, String cleartextPasswords,
+					   Cracker.Kernel kernel, String rules) {
+		super(context);
+		this.nbActors = nbActors;
+		this.cleartextPasswords = cleartextPasswords;
+		this.kernel = kernel;
+
+		ActorRef<Receptionist.Listing> listingAdapter = context.messageAdapter(Receptionist.Listing.class, ListingMessage::new);
+		context.getSystem().receptionist().tell(Receptionist.subscribe(PasswordsRoot.COORDINATOR_KEY, listingAdapter));
+
+		Executor io = context.getSystem().dispatchers().lookup(DispatcherSelector.fromConfig(CrackPasswords.IO_DISPATCHER));
+		CompletableFuture<LoadedMessage> loaded = CompletableFuture.supplyAsync(() -> {
+			try {
+				List<String> malformed = new ArrayList<>();
+				TargetIndex index = TargetIndex.load(hashedPasswords, malformed::add);
+				return new LoadedMessage(index, malformed, (rules == null) ? null : RuleSet.load(Path.of(rules)), null);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, io);
+		context.pipeToSelf(loaded, (result, failure) -> (failure == null) ? result : new LoadedMessage(null, null, null, failure));
+	}
+
+	@Override
+	public Behavior<Message> onMessage(Message message) {
+		return switch (message) {
+			case LoadedMessage lm -> {
+				if (lm.failure() != null) {
+					getContext().getLog().error("Error reading the password or rules files", lm.failure());
+					getContext().getSystem().terminate();
+					yield Behaviors.same();
+				}
+				lm.malformed().forEach(line -> getContext().getLog().error("Malformed line in hashed passwords file: {}", line));
+				targets = lm.targets();
+				rules = lm.rules();
+				startWhenReady();
+				yield Behaviors.same();
+			}
+
+			case ListingMessage listing -> {
+				Set<ActorRef<PasswordsRoot.Message>> coordinators = listing.listing().getServiceInstances(PasswordsRoot.COORDINATOR_KEY);
+				if (!coordinators.isEmpty()) {
+					coordinator = coordinators.iterator().next();
+					startWhenReady();
+				} else if (started) {
+					getContext().getLog().warn("--> Coordinator gone, shutting down the worker node");
+					getContext().getSystem().terminate();
+				}
+				yield Behaviors.same();
+			}
+			default -> Behaviors.unhandled();
+		};
+	}
+
+	@Override
+	public Behavior<Message> onSignal(Signal signal) throws Exception {
+		if (signal instanceof Terminated) {
+			nbActorsRunning--;
+			if (nbActorsRunning == 0) {
+				getContext().getLog().info("--> All actors of this node have finished");
+				getContext().getSystem().terminate();
+			}
+			return Behaviors.same();
+		}
+		return super.onSignal(signal);
+	}
+
+	// Spawn the actors once both the target index and the coordinator are known
+	private void startWhenReady() {
+		if (started || targets == null || coordinator == null) {
+			return;
+		}
+		started = true;
+		metrics.setMailboxDepth(MeteredMailbox::depth);
+		try {
+			metrics.register(getContext().getSystem().name());
+		} catch (IllegalStateException e) {
+			getContext().getLog().warn("Metrics not available over JMX", e);
+		}
+		getContext().getLog().info("--> Coordinator found: {}, starting {} actors", coordinator.path(), nbActors);
+		for (int i = 0; i < nbActors; i++) {
+			ActorRef<PasswordsActor.Message> passwordsActor = getContext().spawn(
+					PasswordsActor.create("PasswordsActor" + i, coordinator),
+					"PasswordsActor" + i,
+					DispatcherSelector.fromConfig(CrackPasswords.COMPUTE_DISPATCHER)
+			);
+			getContext().watch(passwordsActor);
+			passwordsActor.tell(new PasswordsActor.SetupMessage(coordinator, targets, cleartextPasswords, kernel, rules, metrics));
+			nbActorsRunning++;
+		}
+	}
+}
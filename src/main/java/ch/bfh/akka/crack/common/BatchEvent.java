@@ -0,0 +1,53 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for every batch processed by a worker, e.g. with
+ * <code>-XX:StartFlightRecording=filename=crack.jfr</code>. The duration of the event is
+ * the latency of the batch. The event costs nothing while no recording is running.
+ */
+@Name("ch.bfh.akka.crack.Batch")
+@Label("Cracking Batch")
+@Category("Password Cracker")
+@Description("A batch of the word list processed by a worker")
+public class BatchEvent extends Event {
+
+	@Label("Worker")
+	public String worker;
+
+	@Label("Start Offset")
+	@Description("First byte of the batch in the word list")
+	public long start;
+
+	@Label("Size")
+	@DataAmount
+	public long bytes;
+
+	@Label("Candidates")
+	@Description("Candidates tested, after the mangling rules")
+	public long candidates;
+
+	@Label("Hashes")
+	@Description("SHA-512 digests computed")
+	public long hashes;
+
+	@Label("I/O Time")
+	@Timespan
+	public long ioNanos;
+
+	@Label("Found")
+	@Description("Passwords found in the batch")
+	public int found;
+}
@@ -0,0 +1,434 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary word list, written once from a text word list by {@link #convert} and then
+ * memory-mapped by every run, without decoding nor scanning for line ends:
+ * <pre>
+ *   header   "CRWL", version, flags, longest entry, number of entries, length of the data segment,
+ *            number of entries of the ranked head
+ *   data     every entry as an unsigned 16-bit length followed by its UTF-8 bytes
+ *   index    the offset of every entry in the data segment, 8-byte aligned
+ * </pre>
+ * The shards are ranges of entry numbers: every number is the start of an entry, so a shard
+ * needs no aligning, and the offsets of its first entry and of the entry after it are read
+ * from the index once, when the shard is read. The entries are in
+ * the order of the text file, or grouped by length (shortest first) if converted so. Ranked
+ * by a frequency file, the entries it counts come first, most frequent first, so that the
+ * workers, which sweep the list from the start, try the likeliest passwords first; the
+ * header tells where this ranked head ends. All numbers are big-endian.
+ * <p>
+ * Like {@link MappedWordlist}, an instance only holds the layout of the file and can be
+ * shared between workers; every call maps its own window.
+ */
+public final class BinaryWordlist implements CandidateSource {
+
+	private static final byte[] MAGIC = "CRWL".getBytes(StandardCharsets.US_ASCII);
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 40;
+	private static final int FLAG_BY_LENGTH = 1;
+	private static final int FLAG_BY_FREQUENCY = 2;
+	private static final int MAX_ENTRY_LENGTH = 0xFFFF;
+
+	// Size of one mapping; shards larger than this are mapped window by window
+	private static final long WINDOW = 256L * 1024 * 1024;
+
+	private final Path path;
+	private final int flags;
+	private final int maxLength;
+	private final long count;
+	private final long dataLength;
+	private final long rankedCount;
+	private final long indexOffset;
+
+	private BinaryWordlist(Path path, int flags, int maxLength, long count, long dataLength, long rankedCount) {
+		this.path = path;
+		this.flags = flags;
+		this.maxLength = maxLength;
+		this.count = count;
+		this.dataLength = dataLength;
+		this.rankedCount = rankedCount;
+		this.indexOffset = align(HEADER_SIZE + dataLength);
+	}
+
+	private static long align(long offset) {
+		return (offset + 7) & ~7L;
+	}
+
+	/**
+	 * @param path a file
+	 * @return true if the file starts like a binary word list
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isBinary(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+			return channel.size() >= HEADER_SIZE && channel.read(magic, 0) == MAGIC.length
+					&& Arrays.equals(magic.array(), MAGIC);
+		}
+	}
+
+	/**
+	 * Opens a binary word list. Only the header is read.
+	 *
+	 * @param path the binary word list file
+	 * @return the word list
+	 * @throws IOException if the file cannot be opened, or is not a valid binary word list
+	 */
+	public static BinaryWordlist open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if (channel.read(header, 0) < HEADER_SIZE || !Arrays.equals(header.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+				throw new IOException("Not a binary word list: " + path);
+			}
+			int version = header.getInt(4);
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary word list version " + version + ": " + path);
+			}
+			BinaryWordlist wordlist = new BinaryWordlist(path, header.getInt(8), header.getInt(12), header.getLong(16), header.getLong(24),
+					header.getLong(32));
+			if (wordlist.count < 0 || wordlist.dataLength < 0 || wordlist.rankedCount < 0 || wordlist.rankedCount > wordlist.count
+					|| channel.size() != wordlist.indexOffset + wordlist.count * Long.BYTES) {
+				throw new IOException("Corrupt binary word list, truncated or wrong header: " + path);
+			}
+			return wordlist;
+		}
+	}
+
+	@Override
+	public Path path() {
+		return path;
+	}
+
+	/**
+	 * @return the number of entries, the size of the space of entry numbers the shards are ranges of
+	 */
+	@Override
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * @return the number of entries of the word list
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return the length of the data segment in bytes
+	 */
+	public long dataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * @return true if the entries are grouped by length, shortest first
+	 */
+	public boolean byLength() {
+		return (flags & FLAG_BY_LENGTH) != 0;
+	}
+
+	/**
+	 * @return true if the entries counted by a frequency file come first, most frequent first
+	 */
+	public boolean byFrequency() {
+		return (flags & FLAG_BY_FREQUENCY) != 0;
+	}
+
+	/**
+	 * @return the number of entries at the start of the word list that are counted by a
+	 *         frequency file, 0 if the entries are not ranked
+	 */
+	public long rankedCount() {
+		return rankedCount;
+	}
+
+	/**
+	 * Every entry number is the start of an entry.
+	 *
+	 * @param offset any entry number
+	 * @return the number, within the word list
+	 */
+	@Override
+	public long alignForward(long offset) {
+		return Math.max(0, Math.min(offset, count));
+	}
+
+	// The offset in the data segment of an entry, the length of the data segment past the last entry
+	private long offsetOf(FileChannel channel, long entry) throws IOException {
+		if (entry >= count) {
+			return dataLength;
+		}
+		ByteBuffer offset = ByteBuffer.allocate(Long.BYTES);
+		while (offset.hasRemaining()) {
+			if (channel.read(offset, indexOffset + entry * Long.BYTES + offset.position()) < 0) {
+				throw new IOException("Corrupt binary word list, truncated index: " + path);
+			}
+		}
+		return offset.getLong(0);
+	}
+
+	@Override
+	public void load(Shard shard) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = offsetOf(channel, Math.max(0, shard.start()));
+			long end = offsetOf(channel, shard.end());
+			while (position < end) {
+				long windowEnd = Math.min(end, position + WINDOW);
+				channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + position, windowEnd - position).load();
+				position = windowEnd;
+			}
+		}
+	}
+
+	/**
+	 * Hands every entry of the shard to the sink.
+	 *
+	 * @param shard a range of entry numbers
+	 * @param sink  receives every entry as bytes
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void forEach(Shard shard, CandidateSink sink) throws IOException {
+		byte[] buffer = new byte[Math.max(1, maxLength)];
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = offsetOf(channel, Math.max(0, shard.start()));
+			long end = offsetOf(channel, shard.end());
+			while (position < end) {
+				// Every entry starting in the window fits in the mapping
+				long windowEnd = Math.min(end, position + WINDOW);
+				long mapEnd = Math.min(end, windowEnd + 2 + maxLength);
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + position, mapEnd - position);
+				int limit = (int) (windowEnd - position);
+				int index = 0;
+				while (index < limit) {
+					int length = Short.toUnsignedInt(map.getShort(index));
+					map.get(index + 2, buffer, 0, length);
+					sink.accept(buffer, 0, length);
+					index += 2 + length;
+				}
+				position += index;
+			}
+		}
+	}
+
+	/**
+	 * Converts a text word list (one password per line) into a binary word list.
+	 *
+	 * @param text     the text word list
+	 * @param binary   the binary word list to write, replaced
+	 * @param byLength true to group the entries by length, shortest first, otherwise they
+	 *                 keep the order of the text file
+	 * @return the binary word list
+	 * @throws IOException if an I/O error occurs, or a line is longer than 65535 bytes
+	 */
+	public static BinaryWordlist convert(Path text, Path binary, boolean byLength) throws IOException {
+		return convert(text, binary, byLength, null);
+	}
+
+	/**
+	 * Converts a text word list (one password per line) into a binary word list, the entries
+	 * counted by a frequency file first, most frequent first. A frequency file has one
+	 * <code>count password</code> line per password, such as the output of
+	 * <code>sort | uniq -c</code>; the passwords it counts that are not in the word list are
+	 * ignored.
+	 *
+	 * @param text        the text word list
+	 * @param binary      the binary word list to write, replaced
+	 * @param byLength    true to group the entries by length, shortest first, after the
+	 *                    counted ones, otherwise they keep the order of the text file
+	 * @param frequencies the frequency file, or null to rank no entry
+	 * @return the binary word list
+	 * @throws IOException if an I/O error occurs, a line is longer than 65535 bytes, or a line
+	 *                     of the frequency file is malformed
+	 */
+	public static BinaryWordlist convert(Path text, Path binary, boolean byLength, Path frequencies) throws IOException {
+		MappedWordlist source = MappedWordlist.open(text.toString());
+		Map<String, Long> counts = (frequencies == null) ? Map.of() : readFrequencies(frequencies);
+		// First pass: the lengths of the lines, to check them and to group them, and the counted lines
+		long[] lengths = new long[MAX_ENTRY_LENGTH + 1];
+		long[] lines = {0};
+		List<Ranked> ranked = new ArrayList<>();
+		BitSet rankedLines = new BitSet();
+		try {
+			source.forEach(source.all(), (candidate, offset, length) -> {
+				if (length > MAX_ENTRY_LENGTH) {
+					throw new UncheckedIOException(new IOException("Line " + (lines[0] + 1) + " longer than "
+							+ MAX_ENTRY_LENGTH + " bytes in " + text));
+				}
+				if (!counts.isEmpty()) {
+					Long count = counts.get(new String(candidate, offset, length, StandardCharsets.UTF_8));
+					if (count != null && lines[0] < Integer.MAX_VALUE) {
+						ranked.add(new Ranked(Arrays.copyOfRange(candidate, offset, offset + length), count, lines[0]));
+						rankedLines.set((int) lines[0]);
+					}
+				}
+				lengths[length]++;
+				lines[0]++;
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		int maxLength = 0;
+		for (int length = 0; length <= MAX_ENTRY_LENGTH; length++) {
+			if (lengths[length] > 0) {
+				maxLength = length;
+			}
+		}
+
+		long count = lines[0];
+		if (count > Integer.MAX_VALUE - 8) {
+			throw new IOException("Too many lines to convert in " + text + ": " + count);
+		}
+		long[] index = new long[(int) count];
+		long[] dataLength = {0};
+		long[] rankedCount = {0};
+		int[] entries = {0};
+		try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			CandidateSink writer = (candidate, offset, length) -> {
+				try {
+					index[entries[0]++] = dataLength[0];
+					out.writeShort(length);
+					out.write(candidate, offset, length);
+					dataLength[0] += 2 + length;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			};
+			try {
+				// The counted lines first, most frequent first, then the others
+				ranked.sort(Comparator.comparingLong(Ranked::count).reversed().thenComparingLong(Ranked::line));
+				for (Ranked entry : ranked) {
+					writer.accept(entry.password(), 0, entry.password().length);
+				}
+				rankedCount[0] = entries[0];
+				if (byLength) {
+					// One pass per distinct length: slower, but the text is never held in memory
+					for (int length = 0; length <= maxLength; length++) {
+						int wanted = length;
+						if (lengths[wanted] > 0) {
+							forEachUnranked(source, rankedLines, (candidate, offset, size) -> {
+								if (size == wanted) {
+									writer.accept(candidate, offset, size);
+								}
+							});
+						}
+					}
+				} else {
+					forEachUnranked(source, rankedLines, writer);
+				}
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			out.write(new byte[(int) (align(HEADER_SIZE + dataLength[0]) - HEADER_SIZE - dataLength[0])]);
+			for (int i = 0; i < entries[0]; i++) {
+				out.writeLong(index[i]);
+			}
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			int flags = (byLength ? FLAG_BY_LENGTH : 0) | (ranked.isEmpty() ? 0 : FLAG_BY_FREQUENCY);
+			header.put(MAGIC).putInt(VERSION).putInt(flags).putInt(maxLength)
+					.putLong(count).putLong(dataLength[0]).putLong(rankedCount[0]);
+			channel.write(header.flip(), 0);
+			channel.force(true);
+		}
+		return open(binary);
+	}
+
+	// A line of the word list counted by the frequency file
+	private record Ranked(byte[] password, long count, long line) {}
+
+	// Every line of the word list not counted by the frequency file, in the order of the file
+	private static void forEachUnranked(MappedWordlist source, BitSet rankedLines, CandidateSink sink) throws IOException {
+		if (rankedLines.isEmpty()) {
+			source.forEach(source.all(), sink);
+			return;
+		}
+		long[] line = {0};
+		source.forEach(source.all(), (candidate, offset, length) -> {
+			if (line[0] >= Integer.MAX_VALUE || !rankedLines.get((int) line[0])) {
+				sink.accept(candidate, offset, length);
+			}
+			line[0]++;
+		});
+	}
+
+	// The count of every password of a frequency file, the counts of a password listed twice added up
+	private static Map<String, Long> readFrequencies(Path frequencies) throws IOException {
+		Map<String, Long> counts = new HashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(frequencies, StandardCharsets.UTF_8)) {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				String trimmed = line.stripLeading();
+				if (trimmed.isEmpty()) {
+					continue;
+				}
+				int space = trimmed.indexOf(' ');
+				try {
+					long count = Long.parseLong((space < 0) ? trimmed : trimmed.substring(0, space));
+					if (space < 0 || count < 0) {
+						throw new NumberFormatException();
+					}
+					counts.merge(trimmed.substring(space + 1), count, Long::sum);
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed line " + number + " in frequency file " + frequencies
+							+ ", expected: count password");
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Converts a text word list into a binary word list.
+	 *
+	 * @param args arg[0] = the text word list, arg[1] = the binary word list to write,
+	 *             followed by the optional <code>--by-length</code> and <code>--by-frequency=file</code>
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		Options options = Options.parse(args);
+		if (options.positional().size() != 2) {
+			System.err.println("Usage: BinaryWordlist textWordlist binaryWordlist [--by-length] [--by-frequency=file]");
+			return;
+		}
+		long start = System.nanoTime();
+		String frequencies = options.get("by-frequency", "");
+		BinaryWordlist wordlist = convert(Path.of(options.positional().get(0)), Path.of(options.positional().get(1)),
+				options.has("by-length"), frequencies.isEmpty() ? null : Path.of(frequencies));
+		System.out.printf("Wrote %d entries (%d bytes of data, %d bytes in total) to %s in %d ms%n", wordlist.count(),
+				wordlist.dataLength(), Files.size(wordlist.path()), wordlist.path(), (System.nanoTime() - start) / 1_000_000);
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+/**
+ * Receives candidate passwords as raw UTF-8 bytes.
+ * The array is owned by the caller and reused for the next candidate, so an
+ * implementation must not keep a reference to it.
+ * <p>
+ * An implementation may buffer candidates to test several at once; the producer
+ * calls {@link #flush()} once it has no more candidates to give.
+ */
+public interface CandidateSink {
+
+	/**
+	 * Tests one candidate.
+	 *
+	 * @param candidate array holding the candidate bytes
+	 * @param offset    first byte of the candidate
+	 * @param length    number of candidate bytes
+	 */
+	void accept(byte[] candidate, int offset, int length);
+
+	/**
+	 * Tests the candidates buffered so far, if any. Does nothing by default.
+	 */
+	default void flush() {}
+}
@@ -0,0 +1,96 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A word list that can be cut into {@link Shard}s and iterated shard by shard, as bytes.
+ * <p>
+ * Shards are ranges of an offset space of size {@link #size()}, and {@link #alignForward}
+ * moves any offset to the start of a candidate. The text format is read by
+ * {@link MappedWordlist}: its offsets are bytes, and a line belongs to the shard containing
+ * its first byte. The binary format written by {@link BinaryWordlist#convert} is read by
+ * {@link BinaryWordlist}, its offsets are the numbers of the entries. The candidates of a
+ * {@link MaskKeyspace} are generated, and its offsets are the numbers of the candidates.
+ */
+public interface CandidateSource {
+
+	/**
+	 * Opens a word list, binary or text, told apart by the first bytes of the file, or the
+	 * keyspace of a mask, if the name starts with {@link MaskKeyspace#PREFIX}.
+	 *
+	 * @param fileName the name of the word list file, or the prefixed mask
+	 * @return the word list
+	 * @throws IOException if the file cannot be opened, or is a corrupt binary word list,
+	 *                     or the mask is invalid
+	 */
+	static CandidateSource open(String fileName) throws IOException {
+		if (fileName.startsWith(MaskKeyspace.PREFIX)) {
+			try {
+				return MaskKeyspace.parse(fileName.substring(MaskKeyspace.PREFIX.length()));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+		Path path = Path.of(fileName);
+		return BinaryWordlist.isBinary(path) ? BinaryWordlist.open(path) : MappedWordlist.open(fileName);
+	}
+
+	/**
+	 * @return the path of the word list file, or null if the candidates are not read from a file
+	 */
+	Path path();
+
+	/**
+	 * @return the name the word list is opened by, see {@link #open}
+	 */
+	default String name() {
+		return path().toString();
+	}
+
+	/**
+	 * @return the size of the offset space of the shards
+	 */
+	long size();
+
+	/**
+	 * @return the shard covering the whole word list
+	 */
+	default Shard all() {
+		return new Shard(0, size());
+	}
+
+	/**
+	 * Moves an offset forward to the start of the next candidate, unless it already is
+	 * at the start of a candidate.
+	 *
+	 * @param offset any offset
+	 * @return the first candidate start at or after <code>offset</code>, or the size
+	 * @throws IOException if an I/O error occurs
+	 */
+	long alignForward(long offset) throws IOException;
+
+	/**
+	 * Reads the pages of a shard into the page cache, so that iterating the shard right
+	 * after does not wait for the disk. May do nothing, then the pages are read by
+	 * {@link #forEach}.
+	 *
+	 * @param shard a shard of this word list
+	 * @throws IOException if an I/O error occurs
+	 */
+	void load(Shard shard) throws IOException;
+
+	/**
+	 * Hands every candidate starting inside the shard to the sink.
+	 *
+	 * @param shard a shard of this word list, aligned on candidate starts
+	 * @param sink  receives every candidate as bytes
+	 * @throws IOException if an I/O error occurs
+	 */
+	void forEach(Shard shard, CandidateSink sink) throws IOException;
+}
@@ -0,0 +1,245 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The checkpoint of a cracking job: the shards of the word list already processed and
+ * the passwords found so far, kept in an append-only text log:
+ * <pre>
+ *   # crack checkpoint 1
+ *   I &lt;SHA-256 of the input files&gt;
+ *   D &lt;start&gt; &lt;end&gt;          a processed shard
+ *   F &lt;user&gt; &lt;password&gt;      a found password, Base64 encoded
+ * </pre>
+ * Records are appended as the job goes and only reach the disk on {@link #sync()}.
+ * A crash may leave a torn last line: everything after the last newline is ignored
+ * when reading. {@link #compact()} rewrites the log with the merged shards, atomically.
+ * <p>
+ * The checkpoint belongs to one set of inputs, identified by their {@link #fingerprint},
+ * and is ignored if the inputs changed. Instances are NOT thread-safe.
+ */
+public final class Checkpoint implements AutoCloseable {
+
+	private static final String HEADER = "# crack checkpoint 1";
+
+	/**
+	 * The progress recorded in a checkpoint.
+	 *
+	 * @param done  the processed byte ranges of the word list
+	 * @param found the found passwords by user, in the order found
+	 */
+	public record State(RangeSet done, Map<String, String> found) {
+
+		/**
+		 * @return the state of a job that has not started yet
+		 */
+		public static State empty() {
+			return new State(new RangeSet(), new LinkedHashMap<>());
+		}
+	}
+
+	private final Path file;
+	private final String fingerprint;
+	private final State state;
+	private BufferedWriter log;
+
+	private Checkpoint(Path file, String fingerprint, State state) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		this.state = state;
+	}
+
+	/**
+	 * Computes the fingerprint of the input files of a job: the SHA-256 of their sizes and contents.
+	 *
+	 * @param files the input files, in a fixed order
+	 * @return the hexadecimal fingerprint
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static String fingerprint(List<Path> files) throws IOException {
+		return fingerprint(files, List.of());
+	}
+
+	/**
+	 * Computes the fingerprint of the inputs of a job: the SHA-256 of the sizes and contents of
+	 * its input files, then of the inputs given as text, such as a mask.
+	 *
+	 * @param files the input files, in a fixed order
+	 * @param texts the inputs that are not files, in a fixed order
+	 * @return the hexadecimal fingerprint
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static String fingerprint(List<Path> files, List<String> texts) throws IOException {
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Algorithm SHA-256 not available", e);
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+		for (Path path : files) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				sha.update(ByteBuffer.allocate(Long.BYTES).putLong(0, channel.size()));
+				while (channel.read(buffer.clear()) >= 0) {
+					sha.update(buffer.flip());
+				}
+			}
+		}
+		for (String text : texts) {
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			sha.update(ByteBuffer.allocate(Long.BYTES).putLong(0, bytes.length));
+			sha.update(bytes);
+		}
+		return HexFormat.of().formatHex(sha.digest());
+	}
+
+	/**
+	 * Reads the progress recorded in a checkpoint file.
+	 *
+	 * @param file        the checkpoint file
+	 * @param fingerprint the fingerprint of the current inputs
+	 * @return the recorded progress, or null if there is no checkpoint for these inputs
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static State read(Path file, String fingerprint) throws IOException {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		String content = Files.readString(file, StandardCharsets.UTF_8);
+		content = content.substring(0, content.lastIndexOf('\n') + 1); // Drop a torn last line
+		List<String> lines = content.lines().toList();
+		if (lines.size() < 2 || !lines.get(0).equals(HEADER) || !lines.get(1).equals("I " + fingerprint)) {
+			return null;
+		}
+		State state = State.empty();
+		for (String line : lines.subList(2, lines.size())) {
+			String[] fields = line.split(" ");
+			try {
+				if (fields.length == 3 && fields[0].equals("D")) {
+					state.done().add(new Shard(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+				} else if (fields.length == 3 && fields[0].equals("F")) {
+					state.found().putIfAbsent(fields[1],
+							new String(Base64.getDecoder().decode(fields[2]), StandardCharsets.UTF_8));
+				}
+			} catch (IllegalArgumentException e) {
+				// Not a record of ours, skipped like any unknown line
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Opens a checkpoint for appending, after writing the given progress to it.
+	 *
+	 * @param file        the checkpoint file, replaced
+	 * @param fingerprint the fingerprint of the inputs
+	 * @param state       the progress so far, e.g. read from an earlier checkpoint
+	 * @return the checkpoint
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static Checkpoint open(Path file, String fingerprint, State state) throws IOException {
+		Checkpoint checkpoint = new Checkpoint(file, fingerprint, state);
+		checkpoint.compact();
+		return checkpoint;
+	}
+
+	/**
+	 * Records a processed shard.
+	 *
+	 * @param shard the shard
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void done(Shard shard) throws IOException {
+		state.done().add(shard);
+		log.write("D " + shard.start() + " " + shard.end() + "\n");
+	}
+
+	/**
+	 * Records a found password.
+	 *
+	 * @param user     the cracked user
+	 * @param password the password
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void found(String user, String password) throws IOException {
+		if (state.found().putIfAbsent(user, password) == null) {
+			log.write(foundRecord(user, password));
+		}
+	}
+
+	/**
+	 * Writes the records appended since the last call to the disk.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void sync() throws IOException {
+		log.flush();
+	}
+
+	/**
+	 * Replaces the log by the current progress: one record per merged range and per found
+	 * password. The new log is written next to the old one and moved over it atomically.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void compact() throws IOException {
+		if (log != null) {
+			log.close();
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+			writer.write(HEADER + "\n");
+			writer.write("I " + fingerprint + "\n");
+			for (Shard shard : state.done().ranges()) {
+				writer.write("D " + shard.start() + " " + shard.end() + "\n");
+			}
+			for (Map.Entry<String, String> found : state.found().entrySet()) {
+				writer.write(foundRecord(found.getKey(), found.getValue()));
+			}
+			writer.flush();
+			channel.force(true);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		log = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * @return the progress recorded so far
+	 */
+	public State state() {
+		return state;
+	}
+
+	// The password is encoded, as it may contain spaces
+	private static String foundRecord(String user, String password) {
+		return "F " + user + " " + Base64.getEncoder().encodeToString(password.getBytes(StandardCharsets.UTF_8)) + "\n";
+	}
+
+	@Override
+	public void close() throws IOException {
+		log.close();
+	}
+}
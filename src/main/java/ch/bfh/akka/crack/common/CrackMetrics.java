@@ -0,0 +1,301 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Throughput and progress counters of a cracking job, shared by all its workers.
+ * <p>
+ * Every worker adds the totals of a batch once the batch is done, into {@link LongAdder}s:
+ * the adders are striped per thread, so the workers never contend on a counter, and the
+ * hashing loop itself only increments plain fields of its {@link Cracker}. The root reads
+ * the sums, adds the progress of the job, and prints a one-line {@link #report()}.
+ * The metrics can also be read over JMX once {@link #register registered}.
+ * <p>
+ * Recording is thread-safe; {@link #report()} must only be called by one thread.
+ */
+public final class CrackMetrics implements CrackMetricsMXBean {
+
+	// Batch latency buckets: under 1 ms, under 2^i ms for i = 1..15 (about 33 s), and longer
+	private static final int BUCKETS = 17;
+
+	private volatile long startNanos = System.nanoTime(); // Reset once the job starts
+	private final LongAdder candidates = new LongAdder();
+	private final LongAdder hashes = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder bytesDone = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder ioNanos = new LongAdder();
+	private final LongAdder hashNanos = new LongAdder();
+	private final LongAdder[] latency = new LongAdder[BUCKETS];
+	private volatile long totalBytes = 0;
+	private volatile long bytesDoneBefore = 0; // Bytes done by an earlier run, left out of the rates
+	private volatile IntSupplier mailboxDepth = () -> 0;
+	private ObjectName name; // Null unless registered
+
+	// State of the last report, to print the rates over the interval
+	private long lastReportNanos = System.nanoTime();
+	private long lastCandidates = 0;
+	private long lastHashes = 0;
+
+	/**
+	 * Creates the metrics of a job that has not started yet.
+	 */
+	public CrackMetrics() {
+		for (int i = 0; i < BUCKETS; i++) {
+			latency[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Sets the size of the job, once known; the rates are measured from now on.
+	 *
+	 * @param totalBytes the size of the word list
+	 * @param doneBytes  the bytes already done, e.g. by a run resumed from a checkpoint
+	 */
+	public void start(long totalBytes, long doneBytes) {
+		this.bytesDoneBefore = doneBytes;
+		this.totalBytes = totalBytes;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Adds work to the job, e.g. words appended to a watched word list. Called by the root only.
+	 *
+	 * @param bytes the number of bytes to add to the size of the job
+	 */
+	public void addTotalBytes(long bytes) {
+		this.totalBytes = totalBytes + bytes;
+	}
+
+	/**
+	 * Sets the gauge of the messages waiting in the mailboxes of the workers.
+	 *
+	 * @param mailboxDepth returns the current number of waiting messages
+	 */
+	public void setMailboxDepth(IntSupplier mailboxDepth) {
+		this.mailboxDepth = mailboxDepth;
+	}
+
+	/**
+	 * Records a batch processed by a worker.
+	 *
+	 * @param bytes      the length of the batch in the word list
+	 * @param candidates the candidates tested
+	 * @param hashes     the digests computed
+	 * @param ioNanos    the time spent reading the batch
+	 * @param totalNanos the time spent on the whole batch, reading included
+	 */
+	public void recordBatch(long bytes, long candidates, long hashes, long ioNanos, long totalNanos) {
+		this.bytesRead.add(bytes);
+		this.candidates.add(candidates);
+		this.hashes.add(hashes);
+		this.ioNanos.add(ioNanos);
+		this.hashNanos.add(totalNanos - ioNanos);
+		this.batches.increment();
+		long millis = totalNanos / 1_000_000;
+		latency[Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(millis))].increment();
+	}
+
+	/**
+	 * Records a batch of the job as done, i.e. the job has progressed by its length.
+	 *
+	 * @param bytes the length of the batch in the word list
+	 */
+	public void batchDone(long bytes) {
+		bytesDone.add(bytes);
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, replacing any metrics
+	 * registered under the same name, e.g. by an earlier job in the same JVM.
+	 *
+	 * @param jobName the name of the job, e.g. the name of its actor system
+	 */
+	public void register(String jobName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("ch.bfh.akka.crack:type=CrackMetrics,name=" + ObjectName.quote(jobName));
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, objectName);
+			name = objectName;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register the metrics of " + jobName, e);
+		}
+	}
+
+	/**
+	 * Removes these metrics from the platform MBean server, if registered.
+	 */
+	public void unregister() {
+		if (name == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			// Already gone, e.g. replaced by a later job
+		}
+		name = null;
+	}
+
+	/**
+	 * Formats the progress of the job on one line: progress, rates over the interval since
+	 * the last report, share of the worker time spent reading, batch latencies, mailbox
+	 * depth and ETA. The worker figures are left out if no batch was recorded in this JVM,
+	 * e.g. on the coordinator of a cluster.
+	 *
+	 * @return the progress line
+	 */
+	public String report() {
+		long now = System.nanoTime();
+		double seconds = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+		long candidatesNow = getCandidates();
+		long hashesNow = getHashes();
+		StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%.1f%% of %s", 100 * getProgress(), bytes(totalBytes)));
+		if (getBatches() > 0) {
+			long io = ioNanos.sum();
+			long busy = io + hashNanos.sum();
+			line.append(String.format(Locale.ROOT, ", %s candidates/s, %s hashes/s, I/O %.0f%%, batch p50 %d ms p99 %d ms, mailboxes %d",
+					rate((candidatesNow - lastCandidates) / seconds), rate((hashesNow - lastHashes) / seconds),
+					(busy == 0) ? 0.0 : 100.0 * io / busy, getBatchLatencyP50Millis(), getBatchLatencyP99Millis(),
+					getMailboxDepth()));
+		}
+		long eta = getEtaSeconds();
+		line.append(", ETA ").append((eta < 0) ? "unknown" : String.format("%02d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60));
+		lastReportNanos = now;
+		lastCandidates = candidatesNow;
+		lastHashes = hashesNow;
+		return line.toString();
+	}
+
+	private static String bytes(long bytes) {
+		return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+	}
+
+	private static String rate(double perSecond) {
+		return (perSecond >= 1e6) ? String.format(Locale.ROOT, "%.2f M", perSecond / 1e6)
+				: String.format(Locale.ROOT, "%.0f", perSecond);
+	}
+
+	// Upper bound in milliseconds of the bucket holding the given fraction of the batches
+	private long latencyPercentile(double fraction) {
+		long[] histogram = getBatchLatencyHistogram();
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			seen += histogram[i];
+			if (seen >= rank) {
+				return 1L << i;
+			}
+		}
+		return 1L << (BUCKETS - 1); // Longer than the last bound
+	}
+
+	private double elapsedSeconds() {
+		return (System.nanoTime() - startNanos) / 1e9;
+	}
+
+	@Override
+	public long getCandidates() {
+		return candidates.sum();
+	}
+
+	@Override
+	public long getHashes() {
+		return hashes.sum();
+	}
+
+	@Override
+	public double getHashesPerSecond() {
+		return getHashes() / elapsedSeconds();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getBytesDone() {
+		return bytesDoneBefore + bytesDone.sum();
+	}
+
+	@Override
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	@Override
+	public double getProgress() {
+		long total = totalBytes;
+		return (total == 0) ? 0 : Math.min(1.0, (double) getBytesDone() / total);
+	}
+
+	@Override
+	public long getEtaSeconds() {
+		long done = bytesDone.sum(); // Done by this run only
+		if (totalBytes == 0 || done == 0) {
+			return -1;
+		}
+		return (long) ((totalBytes - getBytesDone()) / (done / elapsedSeconds()));
+	}
+
+	@Override
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	@Override
+	public long[] getBatchLatencyHistogram() {
+		long[] histogram = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram[i] = latency[i].sum();
+		}
+		return histogram;
+	}
+
+	@Override
+	public long getBatchLatencyP50Millis() {
+		return latencyPercentile(0.5);
+	}
+
+	@Override
+	public long getBatchLatencyP99Millis() {
+		return latencyPercentile(0.99);
+	}
+
+	@Override
+	public long getIoMillis() {
+		return ioNanos.sum() / 1_000_000;
+	}
+
+	@Override
+	public long getHashMillis() {
+		return hashNanos.sum() / 1_000_000;
+	}
+
+	@Override
+	public int getMailboxDepth() {
+		return mailboxDepth.getAsInt();
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+/**
+ * The JMX view of the {@link CrackMetrics} of a cracking job, e.g. for JConsole or VisualVM.
+ * Counters are totals since the job started; rates are averages over the same period.
+ */
+public interface CrackMetricsMXBean {
+
+	/**
+	 * @return the number of candidates tested, after the mangling rules
+	 */
+	long getCandidates();
+
+	/**
+	 * @return the number of SHA-512 digests computed, one per candidate and live salt
+	 */
+	long getHashes();
+
+	/**
+	 * @return the number of hashes per second since the job started
+	 */
+	double getHashesPerSecond();
+
+	/**
+	 * @return the number of word list bytes read by the workers
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return the number of word list bytes of the batches completed
+	 */
+	long getBytesDone();
+
+	/**
+	 * @return the number of word list bytes of the job, 0 until it is known
+	 */
+	long getTotalBytes();
+
+	/**
+	 * @return the completed fraction of the job, between 0 and 1
+	 */
+	double getProgress();
+
+	/**
+	 * @return the estimated seconds until the word list is exhausted, -1 while unknown
+	 */
+	long getEtaSeconds();
+
+	/**
+	 * @return the number of batches completed by the workers
+	 */
+	long getBatches();
+
+	/**
+	 * @return the batch counts per latency bucket: under 1 ms, under 2 ms, under 4 ms, ..., and longer
+	 */
+	long[] getBatchLatencyHistogram();
+
+	/**
+	 * @return the median batch latency in milliseconds, as the upper bound of its bucket
+	 */
+	long getBatchLatencyP50Millis();
+
+	/**
+	 * @return the 99th percentile batch latency in milliseconds, as the upper bound of its bucket
+	 */
+	long getBatchLatencyP99Millis();
+
+	/**
+	 * @return the milliseconds spent by the workers reading the word list
+	 */
+	long getIoMillis();
+
+	/**
+	 * @return the milliseconds spent by the workers testing candidates
+	 */
+	long getHashMillis();
+
+	/**
+	 * @return the number of messages waiting in the mailboxes of the workers
+	 */
+	int getMailboxDepth();
+}
@@ -0,0 +1,310 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The candidate-outer cracking loop of one worker.
+ * Every candidate is hashed once per salt group of the {@link TargetIndex}, with the
+ * {@link HashScheme} of the group, and the resulting digest is probed in the group. Every matching target is reported to
+ * the {@link MatchHandler} once; the target is then retired, and a salt group whose
+ * targets are all retired is not hashed anymore. Targets cracked elsewhere (e.g. by
+ * another worker) can be retired with {@link #retire(String)}.
+ * <p>
+ * With the {@link Kernel#VECTOR} kernel, candidates are buffered until every lane of a
+ * {@link VectorSha512} is filled, and hashed together once per salt group whose scheme is
+ * plain SHA-512 with a suffix salt; the other groups hash them one by one. Candidates
+ * too long for a single block go through the scalar kernel right away. The buffered
+ * candidates are only tested on the next {@link #flush()}, which every producer calls
+ * at the end of its candidates.
+ * <p>
+ * Instances are NOT thread-safe. Every actor or thread must create its own cracker.
+ */
+public final class Cracker implements CandidateSink {
+
+	/**
+	 * Receives the matches found by a {@link Cracker}.
+	 */
+	@FunctionalInterface
+	public interface MatchHandler {
+
+		/**
+		 * Called for every target whose digest equals the digest of the candidate and its salt.
+		 *
+		 * @param user      the user of the cracked target
+		 * @param candidate array holding the password bytes (reused, copy if needed)
+		 * @param offset    first byte of the password
+		 * @param length    number of password bytes
+		 */
+		void found(String user, byte[] candidate, int offset, int length);
+	}
+
+	/**
+	 * The SHA-512 implementation used by a cracker.
+	 */
+	public enum Kernel {
+		/** One candidate at a time with {@link java.security.MessageDigest}. */
+		SCALAR,
+		/** Several candidates at a time with {@link VectorSha512}, needs the jdk.incubator.vector module. */
+		VECTOR;
+
+		/**
+		 * @param name the name of a kernel, case-insensitive
+		 * @return the kernel
+		 * @throws IllegalArgumentException if there is no such kernel
+		 */
+		public static Kernel of(String name) {
+			return valueOf(name.toUpperCase(Locale.ROOT));
+		}
+
+		/**
+		 * Checks that this kernel can run in this JVM, i.e. for the vector kernel that the
+		 * module is present.
+		 *
+		 * @return null if the kernel is usable, otherwise the reason why it is not
+		 */
+		public String unavailableReason() {
+			if (this == SCALAR) {
+				return null;
+			}
+			try {
+				new VectorSha512();
+				return null;
+			} catch (LinkageError e) {
+				return e.toString();
+			}
+		}
+	}
+
+	private final TargetIndex index;
+	private final HashKernel kernel; // Encodes the text candidates
+	private final HashKernel[] kernelOfGroup; // Kernel of the scheme of every salt group, shared by the groups of a scheme
+	private final ScalarSha512.Midstate[] midstateOfGroup; // Prefix salt absorbed once, null unless SHA-512 and a block long
+	private final MatchHandler handler;
+	private final IntConsumer onProbeHit = this::onProbeHit;
+
+	// Worker-local view of the shared index: retired targets and live targets per salt group
+	private final long[] retired; // One bit per target, the only per-worker state growing with the users
+	private final int[] remainingInGroup;
+	private int remaining;
+
+	// Totals since the creation of the cracker, read by the metrics after every batch
+	private long candidates = 0;
+	private long hashes = 0;
+
+	// The candidate being tested, needed when the probe calls back
+	private byte[] candidate;
+	private int offset;
+	private int length;
+
+	// Vector kernel only (null otherwise): the candidates waiting for a full set of lanes
+	private final VectorSha512 vector;
+	private final byte[][] pending;
+	private final int[] pendingLength;
+	private final byte[] vectorOut = new byte[64];
+	private final int maxSaltLength;
+	private int pendingCount = 0;
+
+	/**
+	 * Creates a cracker for one worker, using the scalar kernel.
+	 *
+	 * @param index   the shared target index
+	 * @param handler receives every match
+	 * @throws NoSuchAlgorithmException if SHA-512 is not available
+	 */
+	public Cracker(TargetIndex index, MatchHandler handler) throws NoSuchAlgorithmException {
+		this(index, handler, Kernel.SCALAR);
+	}
+
+	/**
+	 * Creates a cracker for one worker.
+	 *
+	 * @param index   the shared target index
+	 * @param handler receives every match
+	 * @param kernel  the SHA-512 implementation to use
+	 * @throws NoSuchAlgorithmException if an algorithm of the targets is not available
+	 */
+	public Cracker(TargetIndex index, MatchHandler handler, Kernel kernel) throws NoSuchAlgorithmException {
+		this.index = index;
+		this.kernel = new HashKernel(HashKernel.SHA_512);
+		this.handler = handler;
+		this.kernelOfGroup = new HashKernel[index.groupCount()];
+		this.midstateOfGroup = new ScalarSha512.Midstate[index.groupCount()];
+		Map<HashScheme, HashKernel> kernels = new HashMap<>();
+		int maxSalt = 0;
+		boolean vectorizable = false;
+		for (int g = 0; g < index.groupCount(); g++) {
+			TargetIndex.SaltGroup group = index.group(g);
+			HashKernel groupKernel = kernels.get(group.scheme());
+			if (groupKernel == null) {
+				groupKernel = new HashKernel(group.scheme());
+				kernels.put(group.scheme(), groupKernel);
+			}
+			kernelOfGroup[g] = groupKernel;
+			midstateOfGroup[g] = groupKernel.midstate(group.salt());
+			if (group.scheme().vectorizable()) {
+				vectorizable = true;
+				maxSalt = Math.max(maxSalt, group.salt().length);
+			}
+		}
+		this.maxSaltLength = maxSalt;
+		if (kernel == Kernel.VECTOR && vectorizable) {
+			this.vector = new VectorSha512();
+			this.pending = new byte[vector.lanes()][VectorSha512.MAX_MESSAGE_LENGTH];
+			this.pendingLength = new int[vector.lanes()];
+		} else {
+			this.vector = null;
+			this.pending = null;
+			this.pendingLength = null;
+		}
+		this.retired = new long[(index.size() + 63) >>> 6];
+		this.remainingInGroup = new int[index.groupCount()];
+		for (int g = 0; g < index.groupCount(); g++) {
+			remainingInGroup[g] = index.group(g).size();
+		}
+		this.remaining = index.size();
+	}
+
+	/**
+	 * Retires every target of a user: it will neither be reported again nor cost any hashing
+	 * once all the targets of its salt group are retired.
+	 *
+	 * @param user the cracked user
+	 */
+	public void retire(String user) {
+		for (int id : index.idsOf(user)) {
+			retire(id);
+		}
+	}
+
+	/**
+	 * @return the number of targets not cracked yet
+	 */
+	public int remaining() {
+		return remaining;
+	}
+
+	/**
+	 * @return the number of candidates tested so far, buffered ones included
+	 */
+	public long candidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return the number of digests computed so far
+	 */
+	public long hashes() {
+		return hashes;
+	}
+
+	/**
+	 * Decodes the password bytes reported to a {@link MatchHandler}.
+	 *
+	 * @param candidate array holding the password bytes
+	 * @param offset    first byte of the password
+	 * @param length    number of password bytes
+	 * @return the password
+	 */
+	public static String password(byte[] candidate, int offset, int length) {
+		return new String(candidate, offset, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Tests a candidate given as text.
+	 *
+	 * @param candidate the candidate password
+	 */
+	public void accept(CharSequence candidate) {
+		int length = kernel.encode(candidate);
+		accept(kernel.buffer(), 0, length);
+	}
+
+	@Override
+	public void accept(byte[] candidate, int offset, int length) {
+		candidates++;
+		if (vector != null && length + maxSaltLength <= VectorSha512.MAX_MESSAGE_LENGTH) {
+			System.arraycopy(candidate, offset, pending[pendingCount], 0, length);
+			pendingLength[pendingCount] = length;
+			if (++pendingCount == pending.length) {
+				flush();
+			}
+			return;
+		}
+		this.candidate = candidate;
+		this.offset = offset;
+		this.length = length;
+		for (int g = 0; g < index.groupCount(); g++) {
+			if (remainingInGroup[g] == 0) {
+				continue; // Every user of this salt is cracked already
+			}
+			TargetIndex.SaltGroup group = index.group(g);
+			hashes++;
+			group.probe(kernelOfGroup[g].digest(candidate, offset, length, group.salt(), midstateOfGroup[g]), onProbeHit);
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (pendingCount == 0) {
+			return;
+		}
+		for (int g = 0; g < index.groupCount(); g++) {
+			if (remainingInGroup[g] == 0) {
+				continue;
+			}
+			TargetIndex.SaltGroup group = index.group(g);
+			hashes += pendingCount;
+			if (!group.scheme().vectorizable()) {
+				for (int lane = 0; lane < pendingCount; lane++) {
+					this.candidate = pending[lane];
+					this.offset = 0;
+					this.length = pendingLength[lane];
+					group.probe(kernelOfGroup[g].digest(candidate, 0, length, group.salt(), midstateOfGroup[g]), onProbeHit);
+				}
+				continue;
+			}
+			// Lanes beyond pendingCount still hold an earlier block, their digests are ignored
+			for (int lane = 0; lane < pendingCount; lane++) {
+				vector.load(lane, pending[lane], 0, pendingLength[lane], group.salt());
+			}
+			vector.compute();
+			for (int lane = 0; lane < pendingCount; lane++) {
+				vector.digest(lane, vectorOut);
+				this.candidate = pending[lane];
+				this.offset = 0;
+				this.length = pendingLength[lane];
+				group.probe(vectorOut, onProbeHit);
+			}
+		}
+		pendingCount = 0;
+	}
+
+	private boolean isRetired(int id) {
+		return (retired[id >>> 6] & (1L << id)) != 0;
+	}
+
+	private void onProbeHit(int id) {
+		if (!isRetired(id)) {
+			retire(id);
+			handler.found(index.user(id), candidate, offset, length);
+		}
+	}
+
+	private void retire(int id) {
+		if (!isRetired(id)) {
+			retired[id >>> 6] |= 1L << id;
+			remainingInGroup[index.groupOf(id)]--;
+			remaining--;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of cracked credentials, shared by the runs on the same machine: it maps
+ * a (salt, digest) pair to the password it was cracked to, whatever the user or the file.
+ * <p>
+ * The cache is one file, looked up in place through an open-addressing hash table:
+ * <pre>
+ *   header   "CRCC", version, number of slots (a power of 2), number of records
+ *   slots    per slot: a 64-bit hash of the key and the file offset of its record, 0 if empty
+ *   records  appended: the CRC-32 of the rest of the record, then salt, digest and UTF-8
+ *            password, each with an unsigned 16-bit length
+ * </pre>
+ * The table is rebuilt into a twice larger file, moved atomically over the old one, when
+ * it is half full. A record is appended before its slot is written, so a crash leaves at
+ * worst a torn record without a slot. The records are only ever reached through the slots,
+ * never by scanning them, so a torn record is skipped whatever follows it, and a record
+ * failing its checksum is treated as missing. All numbers are big-endian.
+ * <p>
+ * Entries are not trusted: {@link #resolve} checks every password with one hash before
+ * reporting it. Instances are thread-safe.
+ */
+public final class CredentialCache implements AutoCloseable {
+
+	private static final byte[] MAGIC = "CRCC".getBytes(StandardCharsets.US_ASCII);
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 16;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int SLOTS_PER_READ = 1024; // Slots read at once when the table grows
+
+	private final Path file;
+	private FileChannel channel;
+	private int capacity; // Number of slots, a power of 2
+	private int count; // Number of records with a slot
+
+	private CredentialCache(Path file, FileChannel channel, int capacity, int count) {
+		this.file = file;
+		this.channel = channel;
+		this.capacity = capacity;
+		this.count = count;
+	}
+
+	/**
+	 * Opens a cache, creating an empty one if the file does not exist.
+	 *
+	 * @param file the cache file
+	 * @return the cache
+	 * @throws IOException if an I/O error occurs, or the file is not a cache
+	 */
+	public static CredentialCache open(Path file) throws IOException {
+		if (!Files.exists(file) || Files.size(file) == 0) {
+			writeEmpty(file, INITIAL_CAPACITY);
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			int capacity = header.getInt(8);
+			if (!Arrays.equals(header.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+					|| Integer.bitCount(capacity) != 1 || channel.size() < recordsStart(capacity)) {
+				throw new IOException("Not a credential cache: " + file);
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException("Unsupported credential cache version " + header.getInt(4) + ", delete it: " + file);
+			}
+			return new CredentialCache(file, channel, capacity, header.getInt(12));
+		} catch (IOException e) {
+			channel.close();
+			throw (e instanceof EOFException) ? new IOException("Not a credential cache: " + file, e) : e;
+		}
+	}
+
+	private static void writeEmpty(Path file, int capacity) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(header(capacity, 0), 0);
+			channel.write(ByteBuffer.allocate(capacity * SLOT_SIZE), HEADER_SIZE);
+			channel.force(true);
+		}
+	}
+
+	private static ByteBuffer header(int capacity, int count) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put(MAGIC).putInt(VERSION).putInt(capacity).putInt(count);
+		return header.clear();
+	}
+
+	private static long recordsStart(int capacity) {
+		return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+	}
+
+	// FNV-1a over the salt then the digest
+	private static long hash(byte[] salt, byte[] digest) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : salt) {
+			hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+		}
+		hash = (hash ^ 0xff) * 0x100000001b3L; // Separates the salt from the digest
+		for (byte b : digest) {
+			hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the path of the cache file
+	 */
+	public Path path() {
+		return file;
+	}
+
+	/**
+	 * @return the number of credentials in the cache
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Looks a credential up.
+	 *
+	 * @param salt   the salt of the hashed password
+	 * @param digest the digest of the hashed password
+	 * @return the cached password, or null if the pair is not in the cache
+	 * @throws IOException if an I/O error occurs
+	 */
+	public synchronized String get(byte[] salt, byte[] digest) throws IOException {
+		long hash = hash(salt, digest);
+		ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+		for (int i = (int) hash & (capacity - 1); ; i = (i + 1) & (capacity - 1)) {
+			readFully(channel, slot.clear(), HEADER_SIZE + (long) i * SLOT_SIZE);
+			long offset = slot.getLong(8);
+			if (offset == 0) {
+				return null;
+			}
+			if (slot.getLong(0) == hash) {
+				Record record = readRecord(channel, offset);
+				if (record != null && Arrays.equals(record.salt(), salt) && Arrays.equals(record.digest(), digest)) {
+					return record.password();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a credential, unless its (salt, digest) pair is in the cache already.
+	 *
+	 * @param salt     the salt of the hashed password
+	 * @param digest   the digest of the hashed password
+	 * @param password the password
+	 * @throws IOException if an I/O error occurs
+	 */
+	public synchronized void put(byte[] salt, byte[] digest, String password) throws IOException {
+		byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+		if (salt.length > 0xFFFF || digest.length > 0xFFFF || passwordBytes.length > 0xFFFF || get(salt, digest) != null) {
+			return;
+		}
+		if (2 * (count + 1) > capacity) {
+			grow();
+		}
+		long offset = channel.size();
+		ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + 6 + salt.length + digest.length + passwordBytes.length);
+		record.putInt(0).putShort((short) salt.length).put(salt).putShort((short) digest.length).put(digest)
+				.putShort((short) passwordBytes.length).put(passwordBytes);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), Integer.BYTES, record.capacity() - Integer.BYTES);
+		record.putInt(0, (int) crc.getValue());
+		channel.write(record.flip(), offset);
+		insert(hash(salt, digest), offset);
+		count++;
+		channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, count), 12);
+	}
+
+	// Write a slot for a record, in the first empty slot from its hash on
+	private void insert(long hash, long offset) throws IOException {
+		ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+		int i = (int) hash & (capacity - 1);
+		while (true) {
+			readFully(channel, slot.clear(), HEADER_SIZE + (long) i * SLOT_SIZE);
+			if (slot.getLong(8) == 0) {
+				break;
+			}
+			i = (i + 1) & (capacity - 1);
+		}
+		channel.write(slot.clear().putLong(0, hash).putLong(8, offset), HEADER_SIZE + (long) i * SLOT_SIZE);
+	}
+
+	// Rebuild the cache with twice the slots: the records are copied as they are, after the larger table,
+	// and the slots of the valid ones are inserted again
+	private void grow() throws IOException {
+		int newCapacity = capacity * 2;
+		long delta = recordsStart(newCapacity) - recordsStart(capacity);
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		writeEmpty(temporary, newCapacity);
+		int newCount = 0;
+		try (FileChannel grown = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long end = channel.size();
+			grown.position(recordsStart(newCapacity));
+			for (long position = recordsStart(capacity); position < end; ) {
+				position += channel.transferTo(position, end - position, grown);
+			}
+			FileChannel old = channel;
+			channel = grown; // insert() writes to the new table
+			int oldCapacity = capacity;
+			capacity = newCapacity;
+			try {
+				ByteBuffer slots = ByteBuffer.allocate(SLOTS_PER_READ * SLOT_SIZE);
+				for (int first = 0; first < oldCapacity; first += SLOTS_PER_READ) {
+					int read = Math.min(SLOTS_PER_READ, oldCapacity - first);
+					readFully(old, slots.clear().limit(read * SLOT_SIZE), HEADER_SIZE + (long) first * SLOT_SIZE);
+					for (int i = 0; i < read; i++) {
+						long offset = slots.getLong(i * SLOT_SIZE + 8);
+						// Only the records having a slot and a valid checksum are kept
+						if (offset != 0 && readRecord(old, offset) != null) {
+							insert(slots.getLong(i * SLOT_SIZE), offset + delta);
+							newCount++;
+						}
+					}
+				}
+			} finally {
+				channel = old;
+				capacity = oldCapacity;
+			}
+			grown.write(header(newCapacity, newCount), 0);
+			grown.force(true);
+		}
+		channel.close();
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		capacity = newCapacity;
+		count = newCount;
+	}
+
+	/**
+	 * Looks every target up, and checks every cached password by hashing it once.
+	 *
+	 * @param targets the hashed passwords
+	 * @return the cached passwords that match their target, by user
+	 * @throws IOException if an I/O error occurs
+	 */
+	public Map<String, String> resolve(TargetIndex targets) throws IOException {
+		Map<String, String> resolved = new LinkedHashMap<>();
+		for (int id = 0; id < targets.size(); id++) {
+			if (resolved.containsKey(targets.user(id))) {
+				continue;
+			}
+			TargetIndex.SaltGroup group = targets.group(targets.groupOf(id));
+			byte[] digest = targets.digest(id);
+			String password = get(group.salt(), digest);
+			if (password != null && matches(group, password.getBytes(StandardCharsets.UTF_8), digest)) {
+				resolved.put(targets.user(id), password);
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Adds the password of a cracked user, for every target of the user it matches.
+	 *
+	 * @param targets  the hashed passwords
+	 * @param user     the cracked user
+	 * @param password the password found
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void putAll(TargetIndex targets, String user, String password) throws IOException {
+		byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+		for (int id : targets.idsOf(user)) {
+			TargetIndex.SaltGroup group = targets.group(targets.groupOf(id));
+			byte[] digest = targets.digest(id);
+			if (matches(group, bytes, digest)) {
+				put(group.salt(), digest, password);
+			}
+		}
+	}
+
+	// Hash a password once, with the scheme and salt of the group of the target
+	private static boolean matches(TargetIndex.SaltGroup group, byte[] password, byte[] digest) {
+		try {
+			return new HashKernel(group.scheme()).matches(password, 0, password.length, group.salt(), digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Algorithm " + group.scheme().algorithm().javaName() + " not available", e);
+		}
+	}
+
+	/**
+	 * A record of the cache.
+	 *
+	 * @param salt     the salt
+	 * @param digest   the digest
+	 * @param password the password
+	 */
+	private record Record(byte[] salt, byte[] digest, String password) {}
+
+	// Read a record, or null if it is torn or fails its checksum
+	private static Record readRecord(FileChannel channel, long offset) throws IOException {
+		long end = channel.size();
+		if (offset < HEADER_SIZE || offset + Integer.BYTES > end) {
+			return null;
+		}
+		ByteBuffer checksum = ByteBuffer.allocate(Integer.BYTES);
+		readFully(channel, checksum, offset);
+		CRC32 crc = new CRC32();
+		long position = offset + Integer.BYTES;
+		byte[][] fields = new byte[3][];
+		ByteBuffer length = ByteBuffer.allocate(Short.BYTES);
+		for (int i = 0; i < fields.length; i++) {
+			if (position + Short.BYTES > end) {
+				return null;
+			}
+			readFully(channel, length.clear(), position);
+			int size = Short.toUnsignedInt(length.getShort(0));
+			if (position + Short.BYTES + size > end) {
+				return null;
+			}
+			fields[i] = new byte[size];
+			readFully(channel, ByteBuffer.wrap(fields[i]), position + Short.BYTES);
+			crc.update(length.array());
+			crc.update(fields[i]);
+			position += Short.BYTES + size;
+		}
+		if ((int) crc.getValue() != checksum.getInt(0)) {
+			return null;
+		}
+		return new Record(fields[0], fields[1], new String(fields[2], StandardCharsets.UTF_8));
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of the credential cache");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Writes the cache to the disk and closes it.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		channel.force(true);
+		channel.close();
+	}
+}
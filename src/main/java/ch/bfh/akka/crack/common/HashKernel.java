@@ -0,0 +1,253 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A reusable hashing kernel for one worker (one thread).
+ * It owns a single {@link MessageDigest}, a candidate buffer and a digest output array,
+ * so that hashing a candidate does not allocate anything once the buffers have grown
+ * to the size of the longest candidate.
+ * <p>
+ * Target hashes are decoded once (see {@link HashScheme#decode(String)}) and compared
+ * as raw bytes against the reused output array.
+ * <p>
+ * A kernel computes one {@link HashScheme}. A SHA-512 prefix salt of at least one block can
+ * be absorbed once into a {@link #midstate(byte[])}: every candidate then only compresses
+ * the rest of the salt and itself, with a {@link ScalarSha512} restoring the saved state in
+ * place. Other prefix salts are hashed again with every candidate: a {@link MessageDigest}
+ * can only resume from a saved state by being cloned, and a salt shorter than a block costs
+ * no extra compression anyway.
+ * <p>
+ * Instances are NOT thread-safe. Every actor or thread must create its own kernel.
+ */
+public final class HashKernel {
+
+	/** The hash algorithm used by the password file. */
+	public static final String SHA_512 = "SHA-512";
+
+	private final MessageDigest digest;
+	private final byte[] out;
+	private final boolean prefixSalt;
+	private final int iterations;
+	private final boolean sha512;
+	private ScalarSha512 scalar; // Resumes the midstates, made for the first one
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private byte[] buffer = new byte[64];
+
+	/**
+	 * Creates a kernel for the given algorithm.
+	 *
+	 * @param algorithm algorithm used for hashing, e.g., SHA-512
+	 * @throws NoSuchAlgorithmException if the specified algorithm is invalid
+	 */
+	public HashKernel(String algorithm) throws NoSuchAlgorithmException {
+		this.digest = MessageDigest.getInstance(algorithm);
+		this.out = new byte[digest.getDigestLength()];
+		this.prefixSalt = false;
+		this.iterations = 1;
+		this.sha512 = false;
+	}
+
+	/**
+	 * Creates a kernel for the given scheme.
+	 *
+	 * @param scheme a complete scheme, see {@link HashScheme#resolve(String)}
+	 * @throws NoSuchAlgorithmException if the algorithm of the scheme is not available
+	 */
+	public HashKernel(HashScheme scheme) throws NoSuchAlgorithmException {
+		this.digest = MessageDigest.getInstance(scheme.algorithm().javaName());
+		this.out = new byte[digest.getDigestLength()];
+		this.prefixSalt = scheme.salt() == HashScheme.SaltPosition.PREFIX;
+		this.iterations = scheme.iterations();
+		this.sha512 = scheme.algorithm() == HashScheme.Algorithm.SHA_512;
+	}
+
+	/**
+	 * Returns a hashed string using a specified algorithm and the text to hash.
+	 * The result is encoded in Base64 format. This is the original (allocating) API
+	 * and is kept as a compatibility wrapper.
+	 *
+	 * @param algorithm  algorithm used for hashing, e.g., SHA-512
+	 * @param textToHash the plain text (e.g., password + salt) to be hashed
+	 * @return the base64-encoded string of the hashed text
+	 * @throws NoSuchAlgorithmException if the specified algorithm is invalid
+	 */
+	public static String hash(String algorithm, String textToHash) throws NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance(algorithm);
+		byte[] hashedByteArray = digest.digest(textToHash.getBytes(StandardCharsets.UTF_8));
+		return Base64.getEncoder().encodeToString(hashedByteArray);
+	}
+
+	/**
+	 * Returns the reused candidate buffer. Its content is only valid up to the length
+	 * returned by the last call to {@link #encode(CharSequence)}.
+	 *
+	 * @return the candidate buffer
+	 */
+	public byte[] buffer() {
+		return buffer;
+	}
+
+	/**
+	 * Returns the reused digest array, holding the result of the last call to
+	 * {@link #digest(byte[], int, int, byte[])}.
+	 *
+	 * @return the digest output array
+	 */
+	public byte[] out() {
+		return out;
+	}
+
+	/**
+	 * Encodes the candidate in UTF-8 into the reused buffer.
+	 *
+	 * @param candidate the candidate password
+	 * @return the number of bytes written into {@link #buffer()}
+	 */
+	public int encode(CharSequence candidate) {
+		int length = candidate.length();
+		ensureCapacity(length);
+		// Fast path: plain ASCII, which is the overwhelming majority of the word lists
+		int i = 0;
+		for (; i < length; i++) {
+			char c = candidate.charAt(i);
+			if (c >= 0x80) {
+				break;
+			}
+			buffer[i] = (byte) c;
+		}
+		if (i == length) {
+			return length;
+		}
+		// Slow path: let the encoder deal with multibyte characters
+		ensureCapacity(length * 3);
+		ByteBuffer target = ByteBuffer.wrap(buffer);
+		encoder.reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(candidate), target, true);
+		if (!result.isUnderflow()) {
+			// Unmappable input (e.g. lone surrogates): fall back to the lenient String API
+			byte[] bytes = candidate.toString().getBytes(StandardCharsets.UTF_8);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+			return bytes.length;
+		}
+		encoder.flush(target);
+		return target.position();
+	}
+
+	/**
+	 * Hashes <code>candidate[offset, offset + length)</code> and the salt, as the scheme of
+	 * the kernel says, into the reused output array.
+	 *
+	 * @param candidate array holding the candidate bytes
+	 * @param offset    first byte of the candidate
+	 * @param length    number of candidate bytes
+	 * @param salt      the pre-encoded salt
+	 * @return the output array {@link #out()}
+	 */
+	public byte[] digest(byte[] candidate, int offset, int length, byte[] salt) {
+		if (prefixSalt) {
+			digest.update(salt);
+			digest.update(candidate, offset, length);
+		} else {
+			digest.update(candidate, offset, length);
+			digest.update(salt);
+		}
+		return finish();
+	}
+
+	/**
+	 * Hashes a candidate like {@link #digest(byte[], int, int, byte[])}, resuming from a
+	 * midstate that has absorbed the full blocks of the prefix salt already.
+	 *
+	 * @param candidate array holding the candidate bytes
+	 * @param offset    first byte of the candidate
+	 * @param length    number of candidate bytes
+	 * @param salt      the pre-encoded salt
+	 * @param midstate  the midstate of this salt, null to hash the salt as well
+	 * @return the output array {@link #out()}
+	 */
+	public byte[] digest(byte[] candidate, int offset, int length, byte[] salt, ScalarSha512.Midstate midstate) {
+		if (midstate == null) {
+			return digest(candidate, offset, length, salt);
+		}
+		if (scalar == null) {
+			scalar = new ScalarSha512();
+		}
+		scalar.digest(midstate, candidate, offset, length, out);
+		return iterate();
+	}
+
+	/**
+	 * Absorbs the full blocks of a prefix salt once, to be resumed for every candidate.
+	 *
+	 * @param salt the pre-encoded salt
+	 * @return the midstate, or null if the scheme is not SHA-512 with a prefix salt, or the
+	 *         salt is shorter than a block and has no full block to skip
+	 */
+	public ScalarSha512.Midstate midstate(byte[] salt) {
+		if (!prefixSalt || !sha512 || salt.length < ScalarSha512.BLOCK_LENGTH) {
+			return null;
+		}
+		return ScalarSha512.absorb(salt);
+	}
+
+	// Complete a digest into the output array, then rehash it for every further iteration
+	private byte[] finish() {
+		try {
+			digest.digest(out, 0, out.length);
+		} catch (DigestException e) {
+			// Cannot happen, the output array has exactly the digest length
+			throw new IllegalStateException(e);
+		}
+		return iterate();
+	}
+
+	// Rehash the output array for every iteration of the scheme after the first
+	private byte[] iterate() {
+		try {
+			for (int i = 1; i < iterations; i++) {
+				digest.update(out);
+				digest.digest(out, 0, out.length);
+			}
+		} catch (DigestException e) {
+			// Cannot happen, the output array has exactly the digest length
+			throw new IllegalStateException(e);
+		}
+		return out;
+	}
+
+	/**
+	 * Tests if the digest of the candidate and the salt equals the expected raw digest.
+	 *
+	 * @param candidate array holding the candidate bytes
+	 * @param offset    first byte of the candidate
+	 * @param length    number of candidate bytes
+	 * @param salt      the pre-encoded salt
+	 * @param expected  the decoded target digest
+	 * @return <code>true</code> if the candidate is the password
+	 */
+	public boolean matches(byte[] candidate, int offset, int length, byte[] salt, byte[] expected) {
+		return Arrays.equals(digest(candidate, offset, length, salt), expected);
+	}
+
+	private void ensureCapacity(int length) {
+		if (buffer.length < length) {
+			buffer = new byte[Math.max(length, buffer.length * 2)];
+		}
+	}
+}
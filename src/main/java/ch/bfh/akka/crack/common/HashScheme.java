@@ -0,0 +1,208 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * How a hashed password was computed: the hash algorithm, where the salt goes, how the
+ * digest is written in the file, and how many times it is hashed. The digest is
+ * <code>H(password + salt)</code> with a suffix salt, <code>H(salt + password)</code> with
+ * a prefix salt; every further iteration hashes the raw digest of the previous one.
+ * <p>
+ * A scheme is written as tokens separated by colons, in any order, e.g.
+ * <code>sha256:prefix:hex</code> or <code>md5:x1000</code>:
+ * <pre>
+ *   md5, sha1, sha256, sha512   the algorithm (default: detected)
+ *   suffix, prefix              the position of the salt (default: suffix)
+ *   base64, hex                 the encoding of the digest (default: detected)
+ *   xN                          the number of iterations (default: 1)
+ * </pre>
+ * A scheme may leave the algorithm and the encoding open (null): they are then detected
+ * from the length of every digest by {@link #resolve(String)}, so that a file mixing MD5,
+ * SHA-1, SHA-256 and SHA-512 digests is cracked in one pass. The original password file
+ * format, SHA-512 with a suffix salt in Base64, is detected as {@link #SHA_512}.
+ *
+ * @param algorithm  the hash algorithm, null to detect it
+ * @param salt       the position of the salt
+ * @param encoding   the encoding of the digest in the file, null to detect it
+ * @param iterations the number of times the digest is computed, at least 1
+ */
+public record HashScheme(Algorithm algorithm, SaltPosition salt, Encoding encoding, int iterations) {
+
+	/** Detects the algorithm and encoding of every digest, with a suffix salt and one iteration. */
+	public static final HashScheme AUTO = new HashScheme(null, SaltPosition.SUFFIX, null, 1);
+
+	/** The scheme of the original password file. */
+	public static final HashScheme SHA_512 = new HashScheme(Algorithm.SHA_512, SaltPosition.SUFFIX, Encoding.BASE64, 1);
+
+	/**
+	 * A supported hash algorithm.
+	 */
+	public enum Algorithm {
+		MD5("MD5", 16),
+		SHA_1("SHA-1", 20),
+		SHA_256("SHA-256", 32),
+		SHA_512("SHA-512", 64);
+
+		private final String javaName;
+		private final int digestLength;
+
+		Algorithm(String javaName, int digestLength) {
+			this.javaName = javaName;
+			this.digestLength = digestLength;
+		}
+
+		/**
+		 * @return the name of the algorithm for {@link java.security.MessageDigest#getInstance(String)}
+		 */
+		public String javaName() {
+			return javaName;
+		}
+
+		/**
+		 * @return the length of a digest in bytes
+		 */
+		public int digestLength() {
+			return digestLength;
+		}
+
+		/**
+		 * @param digestLength the length of a digest in bytes
+		 * @return the algorithm having digests of this length, or null if none
+		 */
+		public static Algorithm ofDigestLength(int digestLength) {
+			for (Algorithm algorithm : values()) {
+				if (algorithm.digestLength == digestLength) {
+					return algorithm;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The position of the salt relative to the password.
+	 */
+	public enum SaltPosition {
+		/** <code>H(password + salt)</code> */
+		SUFFIX,
+		/** <code>H(salt + password)</code> */
+		PREFIX
+	}
+
+	/**
+	 * The encoding of the digests in the hashed passwords file.
+	 */
+	public enum Encoding {
+		BASE64,
+		HEX
+	}
+
+	public HashScheme {
+		if (salt == null || iterations < 1) {
+			throw new IllegalArgumentException("A scheme needs a salt position and at least one iteration");
+		}
+	}
+
+	/**
+	 * Parses a scheme.
+	 *
+	 * @param text the scheme, e.g. <code>sha256:prefix:hex:x1000</code>
+	 * @return the scheme, the missing tokens taking their default
+	 * @throws IllegalArgumentException if a token is unknown
+	 */
+	public static HashScheme parse(String text) {
+		Algorithm algorithm = null;
+		SaltPosition salt = SaltPosition.SUFFIX;
+		Encoding encoding = null;
+		int iterations = 1;
+		for (String token : text.toLowerCase(Locale.ROOT).split(":")) {
+			switch (token) {
+				case "auto" -> algorithm = null;
+				case "md5" -> algorithm = Algorithm.MD5;
+				case "sha1" -> algorithm = Algorithm.SHA_1;
+				case "sha256" -> algorithm = Algorithm.SHA_256;
+				case "sha512" -> algorithm = Algorithm.SHA_512;
+				case "suffix" -> salt = SaltPosition.SUFFIX;
+				case "prefix" -> salt = SaltPosition.PREFIX;
+				case "base64" -> encoding = Encoding.BASE64;
+				case "hex" -> encoding = Encoding.HEX;
+				default -> {
+					if (token.length() < 2 || token.charAt(0) != 'x') {
+						throw new IllegalArgumentException("Unknown hash scheme token '" + token + "' in: " + text);
+					}
+					try {
+						iterations = Integer.parseInt(token.substring(1));
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("Bad number of iterations '" + token + "' in: " + text);
+					}
+				}
+			}
+		}
+		return new HashScheme(algorithm, salt, encoding, iterations);
+	}
+
+	/**
+	 * Fills in the algorithm and the encoding of a digest, if they are left open.
+	 * Hex is tried first: the hex digests of the supported algorithms are 32, 40, 64 or 128
+	 * characters long, which is never the length of a Base64 digest of these algorithms.
+	 *
+	 * @param hash the encoded digest, as given in the file
+	 * @return the complete scheme, or null if the digest fits no supported algorithm
+	 */
+	public HashScheme resolve(String hash) {
+		Encoding[] encodings = (encoding == null) ? new Encoding[] {Encoding.HEX, Encoding.BASE64} : new Encoding[] {encoding};
+		for (Encoding tried : encodings) {
+			byte[] digest = decode(tried, hash);
+			if (digest != null) {
+				Algorithm detected = (algorithm == null) ? Algorithm.ofDigestLength(digest.length) : algorithm;
+				if (detected != null && detected.digestLength == digest.length) {
+					return new HashScheme(detected, salt, tried, iterations);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes a digest of the file. The scheme must be complete, see {@link #resolve(String)}.
+	 *
+	 * @param hash the encoded digest
+	 * @return the raw digest, or null if the text is not valid in the encoding of the scheme
+	 */
+	public byte[] decode(String hash) {
+		return decode(encoding, hash);
+	}
+
+	private static byte[] decode(Encoding encoding, String hash) {
+		try {
+			return switch (encoding) {
+				case BASE64 -> Base64.getDecoder().decode(hash);
+				case HEX -> HexFormat.of().parseHex(hash);
+			};
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if the {@link VectorSha512} kernel computes this scheme
+	 */
+	public boolean vectorizable() {
+		return algorithm == Algorithm.SHA_512 && salt == SaltPosition.SUFFIX && iterations == 1;
+	}
+
+	@Override
+	public String toString() {
+		return ((algorithm == null) ? "auto" : algorithm.name().toLowerCase(Locale.ROOT).replace("_", ""))
+				+ ":" + salt.name().toLowerCase(Locale.ROOT)
+				+ ((encoding == null) ? "" : ":" + encoding.name().toLowerCase(Locale.ROOT))
+				+ ":x" + iterations;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One parsed line of the hashed passwords file: <code>user salt hash [scheme]</code>.
+ * The salt is pre-encoded in UTF-8 and the hash is decoded with its {@link HashScheme},
+ * so that the hashing kernel can work on raw bytes only. The lines are only held while a
+ * {@link TargetIndex} is built from them.
+ *
+ * @param user   the user name (an e-mail address)
+ * @param salt   the salt as given in the file
+ * @param saltBytes the UTF-8 encoding of the salt
+ * @param digest the decoded target digest
+ * @param scheme the complete scheme the digest was computed with
+ */
+public record HashedPassword(String user, String salt, byte[] saltBytes, byte[] digest, HashScheme scheme) {
+
+	/**
+	 * Parses one line of the hashed passwords file, detecting the scheme of its digest.
+	 *
+	 * @param line the line to parse
+	 * @return the parsed entry, or <code>null</code> if the line is malformed
+	 */
+	public static HashedPassword parse(String line) {
+		return parse(line, HashScheme.AUTO);
+	}
+
+	/**
+	 * Parses one line of the hashed passwords file. A scheme given on the line replaces the
+	 * scheme of the file.
+	 *
+	 * @param line   the line to parse
+	 * @param scheme the scheme of the file, the algorithm and encoding may be left open
+	 * @return the parsed entry, or <code>null</code> if the line is malformed or its digest
+	 *         does not fit the scheme
+	 */
+	public static HashedPassword parse(String line, HashScheme scheme) {
+		String[] splitLine = line.split(" ");
+		if (splitLine.length != 3 && splitLine.length != 4) {
+			return null;
+		}
+		HashScheme resolved;
+		try {
+			resolved = ((splitLine.length == 4) ? HashScheme.parse(splitLine[3]) : scheme).resolve(splitLine[2]);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (resolved == null) {
+			return null;
+		}
+		return new HashedPassword(splitLine[0], splitLine[1], splitLine[1].getBytes(StandardCharsets.UTF_8),
+				resolved.decode(splitLine[2]), resolved);
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A text word list (one password per line) read through {@link FileChannel#map}.
+ * <p>
+ * The file is never decoded into Strings: it is split into {@link Shard}s at
+ * newline-aligned byte offsets, and each shard is iterated as bytes, every line being
+ * copied into a reused buffer and handed to a {@link CandidateSink}. A line belongs to
+ * the shard containing its first byte. Both <code>\n</code> and <code>\r\n</code> line
+ * endings are accepted.
+ * <p>
+ * An instance only holds the path and the size of the file, so it is cheap to create
+ * and can be shared between workers; every call to {@link #forEach} maps its own window.
+ */
+public final class MappedWordlist implements CandidateSource {
+
+	// Size of one mapping; shards larger than this are mapped window by window
+	private static final long WINDOW = 256L * 1024 * 1024;
+	// Mapped past the end of a window for the line running over it, doubled while the line does not fit
+	private static final long OVERRUN = 4096;
+
+	private final Path path;
+	private final long size;
+
+	private MappedWordlist(Path path, long size) {
+		this.path = path;
+		this.size = size;
+	}
+
+	/**
+	 * Opens a word list. Only the size of the file is read.
+	 *
+	 * @param fileName the name of the word list file
+	 * @return the word list
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static MappedWordlist open(String fileName) throws IOException {
+		Path path = Path.of(fileName);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new MappedWordlist(path, channel.size());
+		}
+	}
+
+	@Override
+	public Path path() {
+		return path;
+	}
+
+	/**
+	 * @return the size of the word list in bytes
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Moves a byte offset forward to the start of the next line, unless it already is
+	 * at the start of a line.
+	 *
+	 * @param offset any byte offset
+	 * @return the first line start at or after <code>offset</code>, or the size of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public long alignForward(long offset) throws IOException {
+		if (offset <= 0) {
+			return 0;
+		}
+		if (offset >= size) {
+			return size;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer chunk = ByteBuffer.allocate(4096);
+			// Start one byte before: if it is a newline, offset is already a line start
+			long position = offset - 1;
+			while (position < size) {
+				chunk.clear();
+				int read = channel.read(chunk, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					if (chunk.get(i) == '\n') {
+						return position + i + 1;
+					}
+				}
+				position += read;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Finds the end of the last line terminated by a newline. A file still being appended
+	 * to may end with a partly written line, which must not be handed out yet.
+	 *
+	 * @param from a line start, where the search stops
+	 * @return the end of the last complete line, or <code>from</code> if there is none after it
+	 * @throws IOException if an I/O error occurs
+	 */
+	public long completeEnd(long from) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer chunk = ByteBuffer.allocate(4096);
+			long end = size;
+			while (end > from) {
+				long position = Math.max(from, end - chunk.capacity());
+				chunk.clear().limit((int) (end - position));
+				int read = channel.read(chunk, position);
+				for (int i = read - 1; i >= 0; i--) {
+					if (chunk.get(i) == '\n') {
+						return position + i + 1;
+					}
+				}
+				end = position;
+			}
+		}
+		return from;
+	}
+
+	/**
+	 * Nothing to read ahead: a second mapping of the shard only to load it would double the
+	 * mappings per batch. The pages are faulted in by {@link #forEach}, through its one mapping.
+	 *
+	 * @param shard a shard of this word list
+	 */
+	@Override
+	public void load(Shard shard) {
+	}
+
+	/**
+	 * Hands every line starting inside the shard to the sink.
+	 *
+	 * @param shard a newline-aligned shard of this word list
+	 * @param sink  receives every line as bytes, without the line terminator
+	 * @throws IOException if an I/O error occurs, or a line is longer than a mapping window
+	 */
+	@Override
+	public void forEach(Shard shard, CandidateSink sink) throws IOException {
+		byte[] buffer = new byte[256];
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = shard.start();
+			long end = Math.min(shard.end(), size);
+			long overrun = OVERRUN;
+			while (position < end) {
+				// Only the lines starting in the window are read, the mapping runs a little past it for the last one
+				long windowEnd = Math.min(end, position + WINDOW);
+				long mapEnd = Math.min(size, windowEnd + overrun);
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, mapEnd - position);
+				int limit = (int) (mapEnd - position);
+				int lineStart = 0;
+				while (position + lineStart < windowEnd) {
+					int newline = indexOfNewline(map, lineStart, limit);
+					int lineEnd = (newline < 0) ? limit : newline;
+					if (newline < 0 && mapEnd < size) {
+						break; // The line runs past the mapping, which is made again from its start
+					}
+					int length = lineEnd - lineStart;
+					if (length > 0 && map.get(lineEnd - 1) == '\r') {
+						length--;
+					}
+					if (buffer.length < length) {
+						buffer = new byte[Math.max(length, buffer.length * 2)];
+					}
+					map.get(lineStart, buffer, 0, length);
+					sink.accept(buffer, 0, length);
+					lineStart = (newline < 0) ? limit : newline + 1;
+				}
+				if (lineStart == 0) {
+					// A single line longer than the overrun: map further, up to a second window
+					if (overrun >= WINDOW) {
+						throw new IOException("Line longer than " + WINDOW + " bytes at offset " + position + " in " + path);
+					}
+					overrun *= 2;
+				}
+				position += lineStart;
+			}
+		}
+	}
+
+	private static int indexOfNewline(MappedByteBuffer map, int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			if (map.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The keyspace of a mask, e.g. <code>?u?l?l?l?d?d</code>: every password having, at every
+ * position, one character of the charset of that position. Nothing is read from a file: the
+ * candidates are numbered from 0 to {@link #size()}, the last position varying fastest, and a
+ * shard is a range of these numbers. Iterating a shard decodes its first number once, then
+ * increments the candidate in place, like an odometer, without allocating.
+ * <p>
+ * A mask is given instead of the word list file name, with the prefix <code>mask:</code>, in
+ * the format of a hashcat <code>.hcmask</code> line: up to four custom charsets, then the
+ * mask, separated by commas (<code>\,</code> is a literal comma), e.g.
+ * <code>mask:aeiou,?u?1?l?1?d?d</code>. A mask and a custom charset consist of:
+ * <pre>
+ *   ?l   abcdefghijklmnopqrstuvwxyz
+ *   ?u   ABCDEFGHIJKLMNOPQRSTUVWXYZ
+ *   ?d   0123456789
+ *   ?h   0123456789abcdef
+ *   ?H   0123456789ABCDEF
+ *   ?s   the printable ASCII symbols and the space
+ *   ?a   ?l?u?d?s
+ *   ?1 .. ?4   the custom charsets, in a mask only
+ *   ??   a literal ?
+ * </pre>
+ * Any other character is itself. Only ASCII characters are supported, so that every position
+ * is one byte. A charset lists every character once, in the order given.
+ * Instances are immutable and can be shared by all threads.
+ */
+public final class MaskKeyspace implements CandidateSource {
+
+	/** The prefix of a mask given instead of a word list file name, see {@link CandidateSource#open}. */
+	public static final String PREFIX = "mask:";
+
+	private static final int MAX_CUSTOM_CHARSETS = 4;
+	private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+	private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	private static final String DIGITS = "0123456789";
+	private static final String SYMBOLS = " !\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+	private final String spec;
+	private final byte[][] charsets; // The charset of every position
+	private final long size;
+
+	private MaskKeyspace(String spec, byte[][] charsets, long size) {
+		this.spec = spec;
+		this.charsets = charsets;
+		this.size = size;
+	}
+
+	/**
+	 * Parses a mask.
+	 *
+	 * @param spec the custom charsets, if any, and the mask, without the prefix
+	 * @return the keyspace of the mask
+	 * @throws IllegalArgumentException if the mask is empty or invalid, or has more than
+	 *                                  {@link Long#MAX_VALUE} candidates
+	 */
+	public static MaskKeyspace parse(String spec) {
+		List<String> fields = split(spec);
+		if (fields.size() > MAX_CUSTOM_CHARSETS + 1) {
+			throw new IllegalArgumentException("At most " + MAX_CUSTOM_CHARSETS + " custom charsets in mask: " + spec);
+		}
+		String[] custom = new String[MAX_CUSTOM_CHARSETS];
+		for (int i = 0; i < fields.size() - 1; i++) {
+			custom[i] = expand(fields.get(i), null, spec);
+			if (custom[i].isEmpty()) {
+				throw new IllegalArgumentException("Empty custom charset " + (i + 1) + " in mask: " + spec);
+			}
+		}
+		String mask = fields.get(fields.size() - 1);
+		List<byte[]> positions = new ArrayList<>();
+		for (int i = 0; i < mask.length(); i++) {
+			char c = mask.charAt(i);
+			if (c == '?') {
+				if (++i == mask.length()) {
+					throw new IllegalArgumentException("Mask ending with ?: " + spec);
+				}
+				positions.add(bytes(expand("?" + mask.charAt(i), custom, spec)));
+			} else {
+				positions.add(bytes(expand(String.valueOf(c), null, spec)));
+			}
+		}
+		if (positions.isEmpty()) {
+			throw new IllegalArgumentException("Empty mask: " + spec);
+		}
+		long size = 1;
+		for (byte[] charset : positions) {
+			try {
+				size = Math.multiplyExact(size, charset.length);
+			} catch (ArithmeticException e) {
+				throw new IllegalArgumentException("Keyspace too large for mask: " + spec);
+			}
+		}
+		return new MaskKeyspace(spec, positions.toArray(new byte[0][]), size);
+	}
+
+	// The comma separated fields of a mask line, with \, unescaped
+	private static List<String> split(String spec) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		for (int i = 0; i < spec.length(); i++) {
+			char c = spec.charAt(i);
+			if (c == '\\' && i + 1 < spec.length() && spec.charAt(i + 1) == ',') {
+				field.append(',');
+				i++;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	// The characters of a charset, every one once, the placeholders replaced
+	private static String expand(String charset, String[] custom, String spec) {
+		StringBuilder characters = new StringBuilder();
+		for (int i = 0; i < charset.length(); i++) {
+			char c = charset.charAt(i);
+			String added;
+			if (c != '?') {
+				added = String.valueOf(c);
+			} else if (++i == charset.length()) {
+				throw new IllegalArgumentException("Charset ending with ? in mask: " + spec);
+			} else {
+				char placeholder = charset.charAt(i);
+				added = switch (placeholder) {
+					case 'l' -> LOWER;
+					case 'u' -> UPPER;
+					case 'd' -> DIGITS;
+					case 'h' -> DIGITS + "abcdef";
+					case 'H' -> DIGITS + "ABCDEF";
+					case 's' -> SYMBOLS;
+					case 'a' -> LOWER + UPPER + DIGITS + SYMBOLS;
+					case '?' -> "?";
+					case '1', '2', '3', '4' -> {
+						String defined = (custom == null) ? null : custom[placeholder - '1'];
+						if (defined == null) {
+							throw new IllegalArgumentException("Undefined custom charset ?" + placeholder + " in mask: " + spec);
+						}
+						yield defined;
+					}
+					default -> throw new IllegalArgumentException("Unknown placeholder ?" + placeholder + " in mask: " + spec);
+				};
+			}
+			for (int j = 0; j < added.length(); j++) {
+				char character = added.charAt(j);
+				if (character > 0x7f) {
+					throw new IllegalArgumentException("Only ASCII characters are supported in mask: " + spec);
+				}
+				if (characters.indexOf(String.valueOf(character)) < 0) {
+					characters.append(character);
+				}
+			}
+		}
+		return characters.toString();
+	}
+
+	private static byte[] bytes(String ascii) {
+		byte[] bytes = new byte[ascii.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) ascii.charAt(i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return null, the candidates are not read from a file
+	 */
+	@Override
+	public Path path() {
+		return null;
+	}
+
+	/**
+	 * @return the mask with its prefix, as given to {@link CandidateSource#open}
+	 */
+	@Override
+	public String name() {
+		return PREFIX + spec;
+	}
+
+	/**
+	 * @return the number of candidates
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return the length of every candidate
+	 */
+	public int length() {
+		return charsets.length;
+	}
+
+	/**
+	 * Every number is the start of a candidate.
+	 *
+	 * @param offset any number
+	 * @return the number, within the keyspace
+	 */
+	@Override
+	public long alignForward(long offset) {
+		return Math.max(0, Math.min(offset, size));
+	}
+
+	/**
+	 * Nothing to read.
+	 *
+	 * @param shard a range of candidate numbers
+	 */
+	@Override
+	public void load(Shard shard) {
+	}
+
+	/**
+	 * Hands the candidates of a range of numbers to the sink, all in the same buffer.
+	 *
+	 * @param shard a range of candidate numbers
+	 * @param sink  receives every candidate as bytes
+	 */
+	@Override
+	public void forEach(Shard shard, CandidateSink sink) {
+		long start = Math.max(0, shard.start());
+		long end = Math.min(size, shard.end());
+		if (start >= end) {
+			return;
+		}
+		int length = charsets.length;
+		byte[] candidate = new byte[length];
+		int[] digits = new int[length];
+		// Decode the first number once, as digits in the radix of every position
+		long rest = start;
+		for (int i = length - 1; i >= 0; i--) {
+			digits[i] = (int) (rest % charsets[i].length);
+			rest /= charsets[i].length;
+			candidate[i] = charsets[i][digits[i]];
+		}
+		for (long number = start; ; ) {
+			sink.accept(candidate, 0, length);
+			if (++number == end) {
+				return;
+			}
+			// The next candidate: the positions that wrap around restart, the first one that does not moves on
+			int i = length - 1;
+			while (++digits[i] == charsets[i].length) {
+				digits[i] = 0;
+				candidate[i] = charsets[i][0];
+				i--;
+			}
+			candidate[i] = charsets[i][digits[i]];
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name();
+	}
+}
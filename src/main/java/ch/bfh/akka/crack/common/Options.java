@@ -0,0 +1,82 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal command line parser shared by the programs: arguments of the form
+ * <code>--name=value</code> (or <code>--name</code> alone) are options, all other
+ * arguments are positional and keep their order.
+ */
+public final class Options {
+
+	private final List<String> positional = new ArrayList<>();
+	private final Map<String, String> options = new HashMap<>();
+
+	private Options() {}
+
+	/**
+	 * Parses the command line arguments.
+	 *
+	 * @param args the arguments given to <code>main</code>
+	 * @return the parsed options
+	 */
+	public static Options parse(String[] args) {
+		Options parsed = new Options();
+		for (String arg : args) {
+			if (arg.startsWith("--")) {
+				int equals = arg.indexOf('=');
+				if (equals < 0) {
+					parsed.options.put(arg.substring(2), "true");
+				} else {
+					parsed.options.put(arg.substring(2, equals), arg.substring(equals + 1));
+				}
+			} else {
+				parsed.positional.add(arg);
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * @return the positional arguments, in order
+	 */
+	public List<String> positional() {
+		return positional;
+	}
+
+	/**
+	 * @param name the option name, without the leading <code>--</code>
+	 * @return <code>true</code> if the option was given
+	 */
+	public boolean has(String name) {
+		return options.containsKey(name);
+	}
+
+	/**
+	 * @param name         the option name, without the leading <code>--</code>
+	 * @param defaultValue returned if the option was not given
+	 * @return the value of the option
+	 */
+	public String get(String name, String defaultValue) {
+		return options.getOrDefault(name, defaultValue);
+	}
+
+	/**
+	 * @param name         the option name, without the leading <code>--</code>
+	 * @param defaultValue returned if the option was not given
+	 * @return the value of the option as an integer
+	 * @throws NumberFormatException if the value is not an integer
+	 */
+	public int getInt(String name, int defaultValue) {
+		String value = options.get(name);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A text word list (one password per line) held in memory as one byte array and the
+ * offsets of its lines, i.e. two objects whatever the number of words. Any line is reached
+ * in constant time, so the list can be split anywhere by line number, e.g. by a
+ * fork/join task. Both <code>\n</code> and <code>\r\n</code> line endings are accepted.
+ * <p>
+ * A {@link BinaryWordlist} is accepted as well, its entries being copied without their
+ * length prefix. The file must be smaller than 2 GB; larger word lists are read with
+ * {@link MappedWordlist}.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class PackedWordlist {
+
+	private final byte[] bytes;
+	// Start of every line, then where a line after the last one would start, so that line i
+	// ends before its terminator at offsets[i + 1] - 1 (one past the end of the file if none)
+	private final int[] offsets;
+
+	private PackedWordlist(byte[] bytes, int[] offsets) {
+		this.bytes = bytes;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Reads a word list into memory.
+	 *
+	 * @param path the word list file, text or binary
+	 * @return the word list
+	 * @throws IOException if an I/O error occurs, or the file is 2 GB or larger
+	 */
+	public static PackedWordlist load(Path path) throws IOException {
+		if (Files.size(path) >= Integer.MAX_VALUE - 1) {
+			throw new IOException("Word list too large to be held in memory: " + path);
+		}
+		if (BinaryWordlist.isBinary(path)) {
+			return load(BinaryWordlist.open(path));
+		}
+		byte[] bytes = Files.readAllBytes(path);
+		int[] offsets = new int[1024];
+		int count = 0;
+		int start = 0;
+		while (start < bytes.length) {
+			if (count + 2 > offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[count++] = start;
+			int newline = indexOfNewline(bytes, start);
+			start = (newline < 0) ? bytes.length + 1 : newline + 1;
+		}
+		offsets[count] = start;
+		return new PackedWordlist(bytes, Arrays.copyOf(offsets, count + 1));
+	}
+
+	// Every entry followed by a newline, i.e. as if read from the text file
+	private static PackedWordlist load(BinaryWordlist binary) throws IOException {
+		byte[] bytes = new byte[(int) (binary.dataLength() - binary.count())]; // One newline instead of a 2-byte length
+		int[] offsets = new int[(int) binary.count() + 1];
+		int[] position = {0};
+		int[] line = {0};
+		binary.forEach(binary.all(), (candidate, offset, length) -> {
+			offsets[line[0]++] = position[0];
+			System.arraycopy(candidate, offset, bytes, position[0], length);
+			position[0] += length;
+			bytes[position[0]++] = '\n';
+		});
+		offsets[line[0]] = position[0];
+		return new PackedWordlist(bytes, offsets);
+	}
+
+	private static int indexOfNewline(byte[] bytes, int from) {
+		for (int i = from; i < bytes.length; i++) {
+			if (bytes[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of lines of the word list
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * @return the size of the word list in bytes
+	 */
+	public int byteSize() {
+		return bytes.length;
+	}
+
+	/**
+	 * Hands the lines <code>[from, to)</code> to the sink, without their line terminator.
+	 * The sink receives the backing array of the word list, which it must not modify.
+	 *
+	 * @param from the first line
+	 * @param to   one past the last line
+	 * @param sink receives every line as bytes
+	 */
+	public void forEach(int from, int to, CandidateSink sink) {
+		for (int i = from; i < to; i++) {
+			int start = offsets[i];
+			int end = offsets[i + 1] - 1;
+			if (end > start && bytes[end - 1] == '\r') {
+				end--;
+			}
+			sink.accept(bytes, start, end - start);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of disjoint byte ranges of a file, adjacent and overlapping ranges being merged.
+ * Used to keep track of the shards of the word list already processed.
+ * Instances are NOT thread-safe.
+ */
+public final class RangeSet {
+
+	private final TreeMap<Long, Long> ranges = new TreeMap<>(); // Start to end, disjoint and not adjacent
+
+	/**
+	 * Adds a range, merging it with its neighbours.
+	 *
+	 * @param shard the range to add, ignored if empty
+	 */
+	public void add(Shard shard) {
+		if (shard.isEmpty()) {
+			return;
+		}
+		long start = shard.start();
+		long end = shard.end();
+		Map.Entry<Long, Long> before = ranges.floorEntry(start);
+		if (before != null && before.getValue() >= start) {
+			start = before.getKey();
+			end = Math.max(end, before.getValue());
+		}
+		Map.Entry<Long, Long> after = ranges.ceilingEntry(start);
+		while (after != null && after.getKey() <= end) {
+			end = Math.max(end, after.getValue());
+			ranges.remove(after.getKey());
+			after = ranges.ceilingEntry(start);
+		}
+		ranges.put(start, end);
+	}
+
+	/**
+	 * @return the ranges of the set, in ascending order
+	 */
+	public List<Shard> ranges() {
+		List<Shard> result = new ArrayList<>(ranges.size());
+		ranges.forEach((start, end) -> result.add(new Shard(start, end)));
+		return result;
+	}
+
+	/**
+	 * @param size the size of the file
+	 * @return the ranges of <code>[0, size)</code> not in the set, in ascending order
+	 */
+	public List<Shard> gaps(long size) {
+		List<Shard> result = new ArrayList<>();
+		long position = 0;
+		for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+			if (range.getKey() >= size) {
+				break;
+			}
+			if (range.getKey() > position) {
+				result.add(new Shard(position, range.getKey()));
+			}
+			position = Math.max(position, range.getValue());
+		}
+		if (position < size) {
+			result.add(new Shard(position, size));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of bytes covered by the set
+	 */
+	public long covered() {
+		long covered = 0;
+		for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+			covered += range.getValue() - range.getKey();
+		}
+		return covered;
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.util.Arrays;
+
+/**
+ * One mangling rule, a sequence of operations applied in place to the bytes of a word.
+ * The syntax is a subset of the hashcat/John the Ripper rules, one character per
+ * operation followed by its arguments; spaces between operations are ignored:
+ * <pre>
+ *   :    do nothing (tests the word itself)
+ *   l    lowercase            u    uppercase
+ *   c    capitalize           C    lowercase the first letter, uppercase the rest
+ *   t    toggle the case      TN   toggle the case at position N
+ *   r    reverse              d    duplicate           f    reflect (word + reverse)
+ *   $X   append X             ^X   prepend X
+ *   [    delete first         ]    delete last
+ *   sXY  replace X by Y       @X   purge every X
+ * </pre>
+ * Positions are <code>0-9</code> then <code>A-Z</code> for 10 to 35. Case operations
+ * only change ASCII letters, the other bytes are kept as they are. A rule is immutable
+ * and can be shared by all workers.
+ */
+public final class Rule {
+
+	private final String text;
+	private final byte[] code; // Operations, each followed by its (up to two) argument bytes
+	private final boolean identity;
+
+	private Rule(String text, byte[] code) {
+		this.text = text;
+		this.code = code;
+		boolean noOperation = true;
+		for (byte op : code) {
+			noOperation &= (op == ':');
+		}
+		this.identity = noOperation;
+	}
+
+	/**
+	 * Compiles a rule.
+	 *
+	 * @param text the rule, e.g. <code>c $1 $2 $3</code> or <code>sa@ so0</code>
+	 * @return the compiled rule
+	 * @throws IllegalArgumentException if the rule has an unknown operation or a missing argument
+	 */
+	public static Rule parse(String text) {
+		byte[] code = new byte[text.length() * 3];
+		int length = 0;
+		int i = 0;
+		while (i < text.length()) {
+			char op = text.charAt(i++);
+			int arguments = switch (op) {
+				case ' ', '\t', '\r' -> -1;
+				case ':', 'l', 'u', 'c', 'C', 't', 'r', 'd', 'f', '[', ']' -> 0;
+				case 'T', '$', '^', '@' -> 1;
+				case 's' -> 2;
+				default -> throw new IllegalArgumentException("Unknown rule operation '" + op + "' in: " + text);
+			};
+			if (arguments < 0) {
+				continue;
+			}
+			if (i + arguments > text.length()) {
+				throw new IllegalArgumentException("Missing argument of '" + op + "' in: " + text);
+			}
+			code[length++] = (byte) op;
+			for (int a = 0; a < arguments; a++) {
+				char argument = text.charAt(i++);
+				if (argument > 0x7f) {
+					throw new IllegalArgumentException("Non ASCII argument of '" + op + "' in: " + text);
+				}
+				if (op == 'T') {
+					code[length++] = (byte) position(argument, text);
+				} else {
+					code[length++] = (byte) argument;
+				}
+			}
+		}
+		return new Rule(text.strip(), Arrays.copyOf(code, length));
+	}
+
+	/**
+	 * @return <code>true</code> if the rule leaves every word unchanged
+	 */
+	public boolean isIdentity() {
+		return identity;
+	}
+
+	/**
+	 * Applies the rule to the word held in <code>word[0, length)</code>, in place.
+	 *
+	 * @param word   holds the word, receives the mangled word
+	 * @param length the length of the word
+	 * @return the length of the mangled word, or -1 if it does not fit in <code>word</code>
+	 */
+	public int apply(byte[] word, int length) {
+		int pc = 0;
+		while (pc < code.length) {
+			byte op = code[pc++];
+			switch (op) {
+				case 'l' -> {
+					for (int i = 0; i < length; i++) {
+						word[i] = lower(word[i]);
+					}
+				}
+				case 'u' -> {
+					for (int i = 0; i < length; i++) {
+						word[i] = upper(word[i]);
+					}
+				}
+				case 'c', 'C' -> {
+					for (int i = 0; i < length; i++) {
+						word[i] = ((i == 0) == (op == 'c')) ? upper(word[i]) : lower(word[i]);
+					}
+				}
+				case 't' -> {
+					for (int i = 0; i < length; i++) {
+						word[i] = toggle(word[i]);
+					}
+				}
+				case 'T' -> {
+					int position = code[pc++];
+					if (position < length) {
+						word[position] = toggle(word[position]);
+					}
+				}
+				case 'r' -> reverse(word, 0, length);
+				case 'd', 'f' -> {
+					if (2 * length > word.length) {
+						return -1;
+					}
+					System.arraycopy(word, 0, word, length, length);
+					if (op == 'f') {
+						reverse(word, length, 2 * length);
+					}
+					length *= 2;
+				}
+				case '$' -> {
+					if (length == word.length) {
+						return -1;
+					}
+					word[length++] = code[pc++];
+				}
+				case '^' -> {
+					if (length == word.length) {
+						return -1;
+					}
+					System.arraycopy(word, 0, word, 1, length++);
+					word[0] = code[pc++];
+				}
+				case '[' -> {
+					if (length > 0) {
+						System.arraycopy(word, 1, word, 0, --length);
+					}
+				}
+				case ']' -> length = Math.max(0, length - 1);
+				case 's' -> {
+					byte from = code[pc++];
+					byte to = code[pc++];
+					for (int i = 0; i < length; i++) {
+						if (word[i] == from) {
+							word[i] = to;
+						}
+					}
+				}
+				case '@' -> {
+					byte purged = code[pc++];
+					int kept = 0;
+					for (int i = 0; i < length; i++) {
+						if (word[i] != purged) {
+							word[kept++] = word[i];
+						}
+					}
+					length = kept;
+				}
+				default -> {} // ':' does nothing
+			}
+		}
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	private static int position(char c, String text) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A' + 10;
+		}
+		throw new IllegalArgumentException("Invalid position '" + c + "' in: " + text);
+	}
+
+	private static void reverse(byte[] word, int from, int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			byte b = word[i];
+			word[i] = word[j];
+			word[j] = b;
+		}
+	}
+
+	private static byte lower(byte b) {
+		return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static byte upper(byte b) {
+		return (b >= 'a' && b <= 'z') ? (byte) (b - ('a' - 'A')) : b;
+	}
+
+	private static byte toggle(byte b) {
+		return (b >= 'a' && b <= 'z') ? upper(b) : lower(b);
+	}
+}
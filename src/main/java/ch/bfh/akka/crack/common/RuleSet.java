@@ -0,0 +1,147 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An ordered list of mangling {@link Rule}s, applied lazily to every word of the word list.
+ * <p>
+ * {@link #mangle(CandidateSink)} puts a sink in front of a cracker: every base word it
+ * receives is expanded into one candidate per rule, written into a reused buffer and
+ * passed on, so the expanded keyspace never exists anywhere, neither on disk nor in memory.
+ * Each worker thus only expands the words of its own shard.
+ * <p>
+ * As with hashcat, the base word itself is only tested if the set contains the rule
+ * <code>:</code>. In that case, candidates that another rule leaves unchanged (e.g.
+ * <code>l</code> on a lowercase word) are not hashed twice.
+ */
+public final class RuleSet {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final List<Rule> rules;
+	private final Rule[] ordered;
+	private final boolean testsBaseWord;
+
+	private RuleSet(List<Rule> rules) {
+		this.rules = List.copyOf(rules);
+		this.ordered = rules.toArray(new Rule[0]);
+		this.testsBaseWord = rules.stream().anyMatch(Rule::isIdentity);
+	}
+
+	/**
+	 * Builds a rule set from compiled rules.
+	 *
+	 * @param rules the rules, in the order they are applied
+	 * @return the rule set
+	 */
+	public static RuleSet of(List<Rule> rules) {
+		return new RuleSet(rules);
+	}
+
+	/**
+	 * Reads a rules file: one rule per line, blank lines and lines starting
+	 * with <code>#</code> are ignored.
+	 *
+	 * @param file the rules file
+	 * @return the rule set
+	 * @throws IOException              if an I/O error occurs
+	 * @throws IllegalArgumentException if a rule is invalid, with its line number
+	 */
+	public static RuleSet load(Path file) throws IOException {
+		List<Rule> rules = new ArrayList<>();
+		try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			int lineNumber = 0;
+			String line = br.readLine();
+			while (line != null) {
+				lineNumber++;
+				if (!line.isBlank() && !line.startsWith("#")) {
+					try {
+						rules.add(Rule.parse(line));
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+					}
+				}
+				line = br.readLine();
+			}
+		}
+		return new RuleSet(rules);
+	}
+
+	/**
+	 * @return the rules, in the order they are applied
+	 */
+	public List<Rule> rules() {
+		return rules;
+	}
+
+	/**
+	 * @return the number of rules, i.e. the number of candidates per base word
+	 */
+	public int size() {
+		return rules.size();
+	}
+
+	/**
+	 * Creates the expanding sink of one worker. The returned sink is NOT thread-safe.
+	 *
+	 * @param target receives every mangled candidate
+	 * @return a sink expanding every base word it receives
+	 */
+	public CandidateSink mangle(CandidateSink target) {
+		return new ManglingSink(target);
+	}
+
+	// Applies every rule to each base word, in a buffer grown on demand
+	private final class ManglingSink implements CandidateSink {
+
+		private final CandidateSink target;
+		private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+		private ManglingSink(CandidateSink target) {
+			this.target = target;
+		}
+
+		@Override
+		public void accept(byte[] candidate, int offset, int length) {
+			for (Rule rule : ordered) {
+				int mangled = apply(rule, candidate, offset, length);
+				if (testsBaseWord && mangled == length && !rule.isIdentity()
+						&& Arrays.equals(buffer, 0, length, candidate, offset, offset + length)) {
+					continue; // Same as the base word, which the identity rule tests anyway
+				}
+				target.accept(buffer, 0, mangled);
+			}
+		}
+
+		@Override
+		public void flush() {
+			target.flush();
+		}
+
+		private int apply(Rule rule, byte[] candidate, int offset, int length) {
+			while (true) {
+				if (buffer.length < length) {
+					buffer = new byte[Math.max(length, buffer.length * 2)];
+				}
+				System.arraycopy(candidate, offset, buffer, 0, length);
+				int mangled = rule.apply(buffer, length);
+				if (mangled >= 0) {
+					return mangled;
+				}
+				buffer = new byte[buffer.length * 2]; // The word grew beyond the buffer
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A scalar SHA-512 resuming from a saved state, for the prefix salts of at least one block.
+ * <p>
+ * {@link #absorb(byte[])} compresses the full blocks of a prefix once, into a {@link Midstate}.
+ * {@link #digest} restores that state into the reused arrays of the instance and compresses
+ * only the rest of the prefix, the message and the padding, without allocating: the state of
+ * a {@link java.security.MessageDigest} can only be saved and restored by cloning it.
+ * <p>
+ * A {@link Midstate} is immutable and can be shared. Instances are NOT thread-safe.
+ */
+public final class ScalarSha512 {
+
+	/** Length of a block of the compression function in bytes. */
+	public static final int BLOCK_LENGTH = 128;
+
+	private static final VarHandle BIG_ENDIAN_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	// Initial hash words and round constants, shared with VectorSha512
+	static final long[] H = {
+			0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+			0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+	};
+
+	static final long[] K = {
+			0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+			0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+			0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+			0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+			0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+			0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+			0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+			0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+			0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+			0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+			0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+			0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+			0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+			0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+			0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+			0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+			0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+			0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+			0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+			0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+	};
+
+	private final long[] state = new long[8];
+	private final long[] words = new long[80]; // Message schedule W0..W79
+	private final byte[] block = new byte[BLOCK_LENGTH];
+
+	/**
+	 * The state of a SHA-512 after the full blocks of a prefix.
+	 *
+	 * @param state    the hash words after the full blocks
+	 * @param tail     the bytes of the prefix after the full blocks, fewer than a block
+	 * @param absorbed the number of bytes compressed into the state
+	 */
+	public record Midstate(long[] state, byte[] tail, long absorbed) {}
+
+	/**
+	 * Compresses the full blocks of a prefix.
+	 *
+	 * @param prefix the prefix, e.g. a salt
+	 * @return the state after the full blocks, and the rest of the prefix
+	 */
+	public static Midstate absorb(byte[] prefix) {
+		ScalarSha512 sha = new ScalarSha512();
+		System.arraycopy(H, 0, sha.state, 0, H.length);
+		int full = prefix.length - prefix.length % BLOCK_LENGTH;
+		for (int offset = 0; offset < full; offset += BLOCK_LENGTH) {
+			sha.compress(prefix, offset);
+		}
+		return new Midstate(sha.state.clone(), Arrays.copyOfRange(prefix, full, prefix.length), full);
+	}
+
+	/**
+	 * Hashes the prefix of a midstate followed by <code>message[offset, offset + length)</code>.
+	 *
+	 * @param midstate the prefix, absorbed by {@link #absorb(byte[])}
+	 * @param message  array holding the message bytes
+	 * @param offset   first byte of the message
+	 * @param length   number of message bytes
+	 * @param out      receives the 64 byte digest
+	 */
+	public void digest(Midstate midstate, byte[] message, int offset, int length, byte[] out) {
+		System.arraycopy(midstate.state(), 0, state, 0, state.length);
+		byte[] tail = midstate.tail();
+		System.arraycopy(tail, 0, block, 0, tail.length);
+		int filled = tail.length;
+		int position = offset;
+		int end = offset + length;
+		while (end - position >= BLOCK_LENGTH - filled) {
+			System.arraycopy(message, position, block, filled, BLOCK_LENGTH - filled);
+			compress(block, 0);
+			position += BLOCK_LENGTH - filled;
+			filled = 0;
+		}
+		System.arraycopy(message, position, block, filled, end - position);
+		filled += end - position;
+		// Padding: the 0x80 marker, then zeros up to the 16 byte length, in a second block if needed
+		block[filled++] = (byte) 0x80;
+		if (filled > BLOCK_LENGTH - 16) {
+			Arrays.fill(block, filled, BLOCK_LENGTH, (byte) 0);
+			compress(block, 0);
+			filled = 0;
+		}
+		Arrays.fill(block, filled, BLOCK_LENGTH - 8, (byte) 0); // The high 64 bits of the length are 0
+		BIG_ENDIAN_LONG.set(block, BLOCK_LENGTH - 8, (midstate.absorbed() + tail.length + length) * 8);
+		compress(block, 0);
+		for (int i = 0; i < state.length; i++) {
+			BIG_ENDIAN_LONG.set(out, i * 8, state[i]);
+		}
+	}
+
+	// Compress one block into the state
+	private void compress(byte[] data, int offset) {
+		for (int t = 0; t < 16; t++) {
+			words[t] = (long) BIG_ENDIAN_LONG.get(data, offset + t * 8);
+		}
+		for (int t = 16; t < 80; t++) {
+			long w2 = words[t - 2];
+			long w15 = words[t - 15];
+			long s1 = Long.rotateRight(w2, 19) ^ Long.rotateRight(w2, 61) ^ (w2 >>> 6);
+			long s0 = Long.rotateRight(w15, 1) ^ Long.rotateRight(w15, 8) ^ (w15 >>> 7);
+			words[t] = s1 + words[t - 7] + s0 + words[t - 16];
+		}
+		long a = state[0];
+		long b = state[1];
+		long c = state[2];
+		long d = state[3];
+		long e = state[4];
+		long f = state[5];
+		long g = state[6];
+		long h = state[7];
+		for (int t = 0; t < 80; t++) {
+			long sigma1 = Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41);
+			long ch = (e & f) ^ (~e & g);
+			long t1 = h + sigma1 + ch + K[t] + words[t];
+			long sigma0 = Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39);
+			long maj = (a & b) ^ (a & c) ^ (b & c);
+			long t2 = sigma0 + maj;
+			h = g;
+			g = f;
+			f = e;
+			e = d + t1;
+			d = c;
+			c = b;
+			b = a;
+			a = t1 + t2;
+		}
+		state[0] += a;
+		state[1] += b;
+		state[2] += c;
+		state[3] += d;
+		state[4] += e;
+		state[5] += f;
+		state[6] += g;
+		state[7] += h;
+	}
+}
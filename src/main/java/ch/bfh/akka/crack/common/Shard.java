@@ -0,0 +1,30 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+/**
+ * A half-open range <code>[start, end)</code> of a word list.
+ * For a text word list the bounds are byte offsets aligned on line starts.
+ *
+ * @param start first position (inclusive)
+ * @param end   last position (exclusive)
+ */
+public record Shard(long start, long end) {
+
+	/**
+	 * @return the number of positions covered by this shard
+	 */
+	public long length() {
+		return end - start;
+	}
+
+	/**
+	 * @return <code>true</code> if the shard covers nothing
+	 */
+	public boolean isEmpty() {
+		return end <= start;
+	}
+}
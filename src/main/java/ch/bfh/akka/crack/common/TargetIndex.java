@@ -0,0 +1,306 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * The parsed hashed passwords file, grouped by hash scheme and salt.
+ * <p>
+ * Every distinct (scheme, salt) pair forms a {@link SaltGroup}. A candidate therefore has
+ * to be hashed once per distinct salt and scheme only, followed by an O(1) probe that
+ * reports every user whose digest matches. Users sharing a salt (or having an empty salt)
+ * cost nothing extra. The digests of all groups are held off the heap in one
+ * {@link TargetTable}, behind a Bloom filter, so that a miss costs one cache line whatever
+ * the number of users. The parsed lines are dropped once indexed: only the user and the salt
+ * group of every target, and the salt of every group, stay on the heap.
+ * <p>
+ * The scheme of every line is detected from the length of its digest, unless given on the
+ * line itself (see {@link HashedPassword}) or by a <code>#scheme=...</code> line, which
+ * applies to the lines below it (see {@link HashScheme} for the syntax). Other lines
+ * starting with <code>#</code> are comments.
+ * <p>
+ * The index is immutable once built and can be shared by all workers of a JVM.
+ * Every target has a stable id (its line among the parsed lines, see {@link #users()}).
+ */
+public final class TargetIndex {
+
+	// Line setting the scheme of the lines below it
+	private static final String SCHEME_DIRECTIVE = "#scheme=";
+
+	private final String[] userOfTarget;
+	private final SaltGroup[] groups;
+	private final int[] groupOfTarget;
+	private final TargetTable table;
+	private final Map<String, int[]> idsOfUser;
+
+	private TargetIndex(List<HashedPassword> targets) {
+		this.userOfTarget = new String[targets.size()];
+		this.groupOfTarget = new int[targets.size()];
+
+		// Group the target ids by scheme and salt, keeping the order of the file
+		Map<GroupKey, List<Integer>> bySalt = new LinkedHashMap<>();
+		for (int id = 0; id < targets.size(); id++) {
+			HashedPassword target = targets.get(id);
+			bySalt.computeIfAbsent(new GroupKey(target.scheme(), target.salt()), key -> new ArrayList<>()).add(id);
+		}
+		int g = 0;
+		for (List<Integer> ids : bySalt.values()) {
+			for (int id : ids) {
+				groupOfTarget[id] = g;
+			}
+			g++;
+		}
+		this.table = new TargetTable(targets, groupOfTarget);
+		this.groups = new SaltGroup[bySalt.size()];
+		g = 0;
+		for (List<Integer> ids : bySalt.values()) {
+			HashedPassword first = targets.get(ids.get(0));
+			groups[g] = new SaltGroup(table, g, first.saltBytes(), first.scheme(), ids.size());
+			g++;
+		}
+
+		// A user may appear on several lines, e.g. after a password change
+		Map<String, List<Integer>> byUser = new HashMap<>();
+		for (int id = 0; id < targets.size(); id++) {
+			userOfTarget[id] = targets.get(id).user();
+			byUser.computeIfAbsent(userOfTarget[id], user -> new ArrayList<>()).add(id);
+		}
+		this.idsOfUser = new HashMap<>();
+		byUser.forEach((user, ids) -> idsOfUser.put(user, ids.stream().mapToInt(Integer::intValue).toArray()));
+	}
+
+	// The targets hashed alike
+	private record GroupKey(HashScheme scheme, String salt) {}
+
+	/**
+	 * Reads and indexes the hashed passwords file. Malformed lines are reported once
+	 * to <code>malformed</code> and skipped.
+	 *
+	 * @param fileName  the name of the hashed passwords file
+	 * @param malformed receives every malformed line
+	 * @return the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static TargetIndex load(String fileName, Consumer<String> malformed) throws IOException {
+		List<HashedPassword> targets = new ArrayList<>();
+		HashScheme scheme = HashScheme.AUTO;
+		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+			String line = br.readLine();
+			while (line != null) {
+				scheme = parseLine(line, scheme, targets, malformed);
+				line = br.readLine();
+			}
+		}
+		return new TargetIndex(targets);
+	}
+
+	/**
+	 * The lines appended to a hashed passwords file since an earlier read.
+	 *
+	 * @param targets the index of the new lines
+	 * @param end     the offset after the last complete line read, where the next read starts
+	 * @param scheme  the scheme set by the last <code>#scheme=</code> line read, for the next read
+	 */
+	public record Tail(TargetIndex targets, long end, HashScheme scheme) {}
+
+	/**
+	 * Reads and indexes the complete lines of a hashed passwords file from an offset on, e.g.
+	 * the lines appended to a file being watched. A last line without newline may still be
+	 * written to, so it is left for the next read.
+	 *
+	 * @param fileName  the name of the hashed passwords file
+	 * @param from      the offset of a line start, the end of the previous tail or 0
+	 * @param scheme    the scheme of the lines, the scheme of the previous tail or {@link HashScheme#AUTO}
+	 * @param malformed receives every malformed line
+	 * @return the index of the lines read, and where to go on from
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static Tail tail(String fileName, long from, HashScheme scheme, Consumer<String> malformed) throws IOException {
+		byte[] bytes;
+		try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size - from > Integer.MAX_VALUE - 8) {
+				throw new IOException("Too many lines appended to " + fileName + " at once: " + (size - from) + " bytes");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, size - from));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, from + buffer.position()) <= 0) {
+					break; // Truncated meanwhile
+				}
+			}
+			bytes = Arrays.copyOf(buffer.array(), buffer.position());
+		}
+		int complete = bytes.length;
+		while (complete > 0 && bytes[complete - 1] != '\n') {
+			complete--;
+		}
+		List<HashedPassword> targets = new ArrayList<>();
+		String text = new String(bytes, 0, complete, StandardCharsets.UTF_8);
+		for (String line : text.split("\r?\n")) {
+			scheme = parseLine(line, scheme, targets, malformed);
+		}
+		return new Tail(new TargetIndex(targets), from + complete, scheme);
+	}
+
+	// Parse one line into the targets; returns the scheme of the next lines
+	private static HashScheme parseLine(String line, HashScheme scheme, List<HashedPassword> targets,
+										Consumer<String> malformed) {
+		if (line.startsWith(SCHEME_DIRECTIVE)) {
+			try {
+				return HashScheme.parse(line.substring(SCHEME_DIRECTIVE.length()).strip());
+			} catch (IllegalArgumentException e) {
+				malformed.accept(line);
+			}
+		} else if (!line.isBlank() && !line.startsWith("#")) {
+			HashedPassword target = HashedPassword.parse(line, scheme);
+			if (target == null) {
+				malformed.accept(line);
+			} else {
+				targets.add(target);
+			}
+		}
+		return scheme;
+	}
+
+	/**
+	 * @return the user of every target, the position being the target id
+	 */
+	public List<String> users() {
+		return Collections.unmodifiableList(Arrays.asList(userOfTarget));
+	}
+
+	/**
+	 * @param id a target id
+	 * @return the user of this target
+	 */
+	public String user(int id) {
+		return userOfTarget[id];
+	}
+
+	/**
+	 * Reads the digest of a target back from the off-heap table.
+	 *
+	 * @param id a target id
+	 * @return a copy of the digest of this target
+	 */
+	public byte[] digest(int id) {
+		return table.digest(id);
+	}
+
+	/**
+	 * @return the number of indexed targets (users)
+	 */
+	public int size() {
+		return userOfTarget.length;
+	}
+
+	/**
+	 * @return the number of distinct (scheme, salt) pairs, i.e. the number of hashes needed per candidate
+	 */
+	public int groupCount() {
+		return groups.length;
+	}
+
+	/**
+	 * @return the number of bytes of the digest table and its Bloom filter, off the heap
+	 */
+	public long offHeapBytes() {
+		return table.offHeapBytes();
+	}
+
+	/**
+	 * @param group a group number in <code>[0, groupCount())</code>
+	 * @return the salt group
+	 */
+	public SaltGroup group(int group) {
+		return groups[group];
+	}
+
+	/**
+	 * @param user a user name
+	 * @return the ids of all targets of this user, empty if the user is unknown
+	 */
+	public int[] idsOf(String user) {
+		return idsOfUser.getOrDefault(user, new int[0]);
+	}
+
+	/**
+	 * @param id a target id
+	 * @return the number of the salt group containing this target
+	 */
+	public int groupOf(int id) {
+		return groupOfTarget[id];
+	}
+
+	/**
+	 * All targets sharing one salt and scheme, probed in the shared {@link TargetTable}.
+	 */
+	public static final class SaltGroup {
+
+		private final TargetTable table;
+		private final int group;
+		private final byte[] salt;
+		private final HashScheme scheme;
+		private final int size;
+
+		private SaltGroup(TargetTable table, int group, byte[] salt, HashScheme scheme, int size) {
+			this.table = table;
+			this.group = group;
+			this.salt = salt;
+			this.scheme = scheme;
+			this.size = size;
+		}
+
+		/**
+		 * @return the UTF-8 encoded salt shared by every target of this group
+		 */
+		public byte[] salt() {
+			return salt;
+		}
+
+		/**
+		 * @return the scheme shared by every target of this group
+		 */
+		public HashScheme scheme() {
+			return scheme;
+		}
+
+		/**
+		 * @return the number of targets in this group
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Looks up a computed digest and reports the id of every target having exactly
+		 * this digest (several users may share salt and password).
+		 *
+		 * @param digest  the computed digest
+		 * @param onMatch receives the id of every matching target
+		 */
+		public void probe(byte[] digest, IntConsumer onMatch) {
+			table.probe(group, digest, onMatch);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The digests of all targets of a {@link TargetIndex}, off the heap, in one open-addressing
+ * table keyed by salt group and digest prefix, behind a blocked Bloom filter.
+ * <p>
+ * Most probes are misses. The Bloom filter answers them by reading one cache line: every
+ * key sets 6 bits of one 64-byte block, with 16 bits per target, so well under 1% of the misses
+ * go on to the table. The table holds, per slot, the first eight bytes of the digest, the
+ * target id and its group; a hit on the prefix is confirmed against the full digest.
+ * <p>
+ * The memory is allocated once, with direct buffers, and never copied: every worker of the
+ * JVM probes the same table, so adding workers adds no memory. The table holds the only copy
+ * of the digests, which {@link #digest(int)} reads back; the heap keeps no per-target array
+ * for the garbage collector to scan. Every buffer is limited to 2 GB: a table holds at most
+ * 2^25 (about 33 million) targets, as the slots are sized for a load factor of at most one
+ * half, and fewer if their digests take more than 2 GB, e.g. 33 million SHA-512 digests.
+ * Instances are immutable once built and can be shared by all threads.
+ */
+final class TargetTable {
+
+	private static final int SLOT_SIZE = 16; // Digest prefix, id + 1 (0 if empty), group
+	private static final int BLOCK_SIZE = 64; // One cache line
+	private static final int BITS_PER_TARGET = 16;
+	private static final int BITS_PER_KEY = 6;
+	private static final int MAX_TARGETS = 1 << 25; // Twice as many slots of 16 bytes fill one buffer
+
+	private final ByteBuffer slots;
+	private final int slotMask;
+	private final ByteBuffer bloom;
+	private final int blockMask;
+	private final ByteBuffer digests; // Digest of every target, in id order
+	private final ByteBuffer digestOffsets; // Start of the digest of every target, then the end of the last one
+
+	TargetTable(List<HashedPassword> targets, int[] groupOfTarget) {
+		int count = targets.size();
+		if (count > MAX_TARGETS) {
+			throw new IllegalArgumentException("Too many targets for one table: " + count + ", at most " + MAX_TARGETS);
+		}
+		int capacity = Integer.highestOneBit(Math.max(2, count * 2) - 1) << 1;
+		this.slots = allocate((long) capacity * SLOT_SIZE);
+		this.slotMask = capacity - 1;
+		int bloomBytes = Integer.highestOneBit(Math.max(BLOCK_SIZE, count * BITS_PER_TARGET / 8) - 1) << 1;
+		this.bloom = allocate(bloomBytes);
+		this.blockMask = bloomBytes / BLOCK_SIZE - 1;
+
+		long digestBytes = 0;
+		for (HashedPassword target : targets) {
+			digestBytes += target.digest().length;
+		}
+		this.digests = allocate(digestBytes);
+		this.digestOffsets = allocate((count + 1L) * Integer.BYTES);
+		int offset = 0;
+		for (int id = 0; id < count; id++) {
+			byte[] digest = targets.get(id).digest();
+			digestOffsets.putInt(id * Integer.BYTES, offset);
+			digests.put(offset, digest);
+			offset += digest.length;
+
+			long key = key(digest);
+			int group = groupOfTarget[id];
+			long hash = hash(key, group);
+			addToBloom(hash);
+			int slot = (int) hash & slotMask;
+			while (slots.getInt(slot * SLOT_SIZE + 8) != 0) {
+				slot = (slot + 1) & slotMask;
+			}
+			slots.putLong(slot * SLOT_SIZE, key);
+			slots.putInt(slot * SLOT_SIZE + 8, id + 1);
+			slots.putInt(slot * SLOT_SIZE + 12, group);
+		}
+		digestOffsets.putInt(count * Integer.BYTES, offset);
+	}
+
+	private static ByteBuffer allocate(long bytes) {
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many targets for one table: " + bytes + " bytes needed");
+		}
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @return the number of bytes allocated off the heap
+	 */
+	long offHeapBytes() {
+		return (long) slots.capacity() + bloom.capacity() + digests.capacity() + digestOffsets.capacity();
+	}
+
+	/**
+	 * Looks up a computed digest and reports the id of every target of the group having
+	 * exactly this digest.
+	 *
+	 * @param group   the salt group the digest was computed for
+	 * @param digest  the computed digest
+	 * @param onMatch receives the id of every matching target
+	 */
+	void probe(int group, byte[] digest, IntConsumer onMatch) {
+		long key = key(digest);
+		long hash = hash(key, group);
+		if (!mightContain(hash)) {
+			return;
+		}
+		int slot = (int) hash & slotMask;
+		int id;
+		while ((id = slots.getInt(slot * SLOT_SIZE + 8)) != 0) {
+			if (slots.getLong(slot * SLOT_SIZE) == key && slots.getInt(slot * SLOT_SIZE + 12) == group
+					&& digestEquals(id - 1, digest)) {
+				onMatch.accept(id - 1);
+			}
+			slot = (slot + 1) & slotMask;
+		}
+	}
+
+	/**
+	 * @param id a target id
+	 * @return a copy of the digest of the target
+	 */
+	byte[] digest(int id) {
+		int start = digestOffsets.getInt(id * Integer.BYTES);
+		byte[] digest = new byte[digestOffsets.getInt((id + 1) * Integer.BYTES) - start];
+		digests.get(start, digest);
+		return digest;
+	}
+
+	private boolean digestEquals(int id, byte[] digest) {
+		int start = digestOffsets.getInt(id * Integer.BYTES);
+		if (digestOffsets.getInt((id + 1) * Integer.BYTES) - start != digest.length) {
+			return false;
+		}
+		for (int i = 0; i < digest.length; i++) {
+			if (digests.get(start + i) != digest[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The bits of a key, all in the block chosen by the high half of its hash
+	private void addToBloom(long hash) {
+		int block = ((int) (hash >>> 32) & blockMask) * BLOCK_SIZE;
+		long bits = hash * 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < BITS_PER_KEY; i++, bits >>>= 9) {
+			int bit = (int) bits & 511;
+			int word = block + (bit >>> 6) * Long.BYTES;
+			bloom.putLong(word, bloom.getLong(word) | (1L << bit));
+		}
+	}
+
+	private boolean mightContain(long hash) {
+		int block = ((int) (hash >>> 32) & blockMask) * BLOCK_SIZE;
+		long bits = hash * 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < BITS_PER_KEY; i++, bits >>>= 9) {
+			int bit = (int) bits & 511;
+			if ((bloom.getLong(block + (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long key(byte[] digest) {
+		// First eight bytes, big-endian; assembled by hand to stay allocation-free
+		long key = 0;
+		int length = Math.min(Long.BYTES, digest.length);
+		for (int i = 0; i < length; i++) {
+			key = (key << 8) | (digest[i] & 0xff);
+		}
+		return key;
+	}
+
+	// Mix the digest prefix with the group, so that equal digests of different salts spread
+	private static long hash(long key, int group) {
+		long hash = (key ^ (group * 0xC2B2AE3D27D4EB4FL)) * 0xBF58476D1CE4E5B9L;
+		return hash ^ (hash >>> 31);
+	}
+}
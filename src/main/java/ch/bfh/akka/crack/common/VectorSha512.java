@@ -0,0 +1,152 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A multi-buffer SHA-512 for single-block messages, built on the Vector API.
+ * <p>
+ * Every lane of a {@link LongVector} hashes its own message, so one call to
+ * {@link #compute()} hashes {@link #lanes()} messages at once (4 with AVX2, 8 with
+ * AVX-512). A message fits in one 128 byte block if it is at most
+ * {@link #MAX_MESSAGE_LENGTH} bytes long, which is the case of nearly every
+ * <code>password + salt</code>; longer messages must go through {@link HashKernel}.
+ * <p>
+ * Usage: {@link #load} one message per lane, {@link #compute()}, then read each lane with
+ * {@link #digest(int, byte[])}. The class needs <code>--add-modules jdk.incubator.vector</code>
+ * and is only loaded when the vector kernel is selected: without the module, creating an
+ * instance fails with a {@link LinkageError}. It is checked against
+ * {@link java.security.MessageDigest} by the unit tests. Instances are NOT thread-safe.
+ */
+public final class VectorSha512 {
+
+	/** Longest message hashed in a single block: 128 bytes minus the 0x80 marker and the 16 byte length. */
+	public static final int MAX_MESSAGE_LENGTH = 111;
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+	private static final VarHandle BIG_ENDIAN_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private static final long[] H = ScalarSha512.H;
+	private static final long[] K = ScalarSha512.K;
+
+	private final int lanes = SPECIES.length();
+	private final byte[] block = new byte[128];
+	private final long[] words = new long[80 * lanes]; // Message schedule W0..W79, lane-interleaved
+	private final long[] state = new long[8 * lanes]; // Resulting hash words, lane-interleaved
+
+	/**
+	 * @return the number of messages hashed by one call to {@link #compute()}
+	 */
+	public int lanes() {
+		return lanes;
+	}
+
+	/**
+	 * Loads the message <code>first[offset, offset + length) + second</code> into a lane,
+	 * e.g. a candidate and a salt, and pads it to one block.
+	 *
+	 * @param lane   the lane, in <code>[0, lanes())</code>
+	 * @param first  array holding the first part of the message
+	 * @param offset first byte of the first part
+	 * @param length number of bytes of the first part
+	 * @param second the second part of the message
+	 * @throws IllegalArgumentException if the message is longer than {@link #MAX_MESSAGE_LENGTH}
+	 */
+	public void load(int lane, byte[] first, int offset, int length, byte[] second) {
+		int total = length + second.length;
+		if (total > MAX_MESSAGE_LENGTH) {
+			throw new IllegalArgumentException("Message of " + total + " bytes does not fit in one block");
+		}
+		System.arraycopy(first, offset, block, 0, length);
+		System.arraycopy(second, 0, block, length, second.length);
+		block[total] = (byte) 0x80;
+		Arrays.fill(block, total + 1, 120, (byte) 0); // Bytes 120-127 always hold the length
+		BIG_ENDIAN_LONG.set(block, 120, (long) total * 8); // Message length in bits
+		for (int i = 0; i < 16; i++) {
+			words[i * lanes + lane] = (long) BIG_ENDIAN_LONG.get(block, i * 8);
+		}
+	}
+
+	/**
+	 * Hashes the loaded block of every lane. Lanes not loaded since the last call hold
+	 * their previous block and simply produce its hash again.
+	 */
+	public void compute() {
+		// Expand the message schedule in memory: vectors kept in an array would be boxed
+		for (int t = 16; t < 80; t++) {
+			LongVector w2 = LongVector.fromArray(SPECIES, words, (t - 2) * lanes);
+			LongVector w15 = LongVector.fromArray(SPECIES, words, (t - 15) * lanes);
+			LongVector s1 = w2.lanewise(VectorOperators.ROR, 19)
+					.lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 61))
+					.lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 6));
+			LongVector s0 = w15.lanewise(VectorOperators.ROR, 1)
+					.lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 8))
+					.lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 7));
+			s1.add(LongVector.fromArray(SPECIES, words, (t - 7) * lanes))
+					.add(s0)
+					.add(LongVector.fromArray(SPECIES, words, (t - 16) * lanes))
+					.intoArray(words, t * lanes);
+		}
+		LongVector a = LongVector.broadcast(SPECIES, H[0]);
+		LongVector b = LongVector.broadcast(SPECIES, H[1]);
+		LongVector c = LongVector.broadcast(SPECIES, H[2]);
+		LongVector d = LongVector.broadcast(SPECIES, H[3]);
+		LongVector e = LongVector.broadcast(SPECIES, H[4]);
+		LongVector f = LongVector.broadcast(SPECIES, H[5]);
+		LongVector g = LongVector.broadcast(SPECIES, H[6]);
+		LongVector h = LongVector.broadcast(SPECIES, H[7]);
+
+		for (int t = 0; t < 80; t++) {
+			LongVector wt = LongVector.fromArray(SPECIES, words, t * lanes);
+			LongVector sigma1 = e.lanewise(VectorOperators.ROR, 14)
+					.lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 18))
+					.lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 41));
+			LongVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+			LongVector t1 = h.add(sigma1).add(ch).add(K[t]).add(wt);
+			LongVector sigma0 = a.lanewise(VectorOperators.ROR, 28)
+					.lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 34))
+					.lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 39));
+			LongVector maj = a.and(b).lanewise(VectorOperators.XOR, a.and(c)).lanewise(VectorOperators.XOR, b.and(c));
+			LongVector t2 = sigma0.add(maj);
+			h = g;
+			g = f;
+			f = e;
+			e = d.add(t1);
+			d = c;
+			c = b;
+			b = a;
+			a = t1.add(t2);
+		}
+
+		a.add(H[0]).intoArray(state, 0);
+		b.add(H[1]).intoArray(state, lanes);
+		c.add(H[2]).intoArray(state, 2 * lanes);
+		d.add(H[3]).intoArray(state, 3 * lanes);
+		e.add(H[4]).intoArray(state, 4 * lanes);
+		f.add(H[5]).intoArray(state, 5 * lanes);
+		g.add(H[6]).intoArray(state, 6 * lanes);
+		h.add(H[7]).intoArray(state, 7 * lanes);
+	}
+
+	/**
+	 * Writes the 64 byte digest of a lane, as computed by the last {@link #compute()}.
+	 *
+	 * @param lane the lane
+	 * @param out  receives the digest, at least 64 bytes long
+	 */
+	public void digest(int lane, byte[] out) {
+		for (int i = 0; i < 8; i++) {
+			BIG_ENDIAN_LONG.set(out, i * 8, state[i * lanes + lane]);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.parallel;
+
+/**
+ * Marker interface of the messages exchanged between the nodes of a cluster.
+ * It is bound to the Jackson CBOR serializer in <code>cluster.conf</code>; messages
+ * only ever sent within one JVM (e.g. carrying the target index) do not implement it.
+ */
+public interface CborSerializable {}
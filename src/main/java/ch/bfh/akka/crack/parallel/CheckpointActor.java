@@ -0,0 +1,144 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.parallel;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractOnMessageBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.TimerScheduler;
+import ch.bfh.akka.crack.common.Checkpoint;
+import ch.bfh.akka.crack.common.Shard;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The behavior of the checkpoint actor, running on the I/O dispatcher.
+ * The root reports every processed shard and every found password; the actor appends
+ * them to the checkpoint log and writes the log to the disk periodically, so that
+ * neither the root nor the workers ever wait for the disk. Once the job is done,
+ * the log is compacted and the root is told.
+ * <p>
+ * An I/O error disables checkpointing for the rest of the run, the job itself goes on.
+ */
+public class CheckpointActor extends AbstractOnMessageBehavior<CheckpointActor.Message> {
+
+	// How often the appended records are written to the disk
+	private static final Duration SYNC_INTERVAL = Duration.ofSeconds(5);
+
+	private final Path file;
+	private Checkpoint checkpoint; // Null once checkpointing is disabled by an I/O error
+
+	/**
+	 * Interface representing the messages exchanged with the checkpoint actor.
+	 */
+	public interface Message {}
+
+	// A shard of the word list has been processed
+	public record ShardDoneMessage(Shard shard) implements Message {}
+
+	// A password has been found
+	public record PasswordFoundMessage(String user, String password) implements Message {}
+
+	// The job is done: compact the log, then tell the root
+	public record CompleteMessage(ActorRef<PasswordsRoot.Message> replyTo) implements Message {}
+
+	// Timer message to write the appended records to the disk
+	private record SyncMessage() implements Message {}
+
+	/**
+	 * Static factory method to create the checkpoint actor.
+	 *
+	 * @param file        the checkpoint file
+	 * @param fingerprint the fingerprint of the input files
+	 * @param state       the progress resumed from an earlier run, or an empty state
+	 * @return the behavior of the checkpoint actor
+	 */
+	public static Behavior<Message> create(Path file, String fingerprint, Checkpoint.State state) {
+		return Behaviors.setup(context -> Behaviors.withTimers(timers ->
+				new CheckpointActor(context, timers, file, fingerprint, state)));
+	}
+
+	private CheckpointActor(ActorContext<Message> context, TimerScheduler<Message> timers, Path file,
+							String fingerprint, Checkpoint.State state) {
+		super(context);
+		this.file = file;
+		try {
+			this.checkpoint = Checkpoint.open(file, fingerprint, state);
+			timers.startTimerWithFixedDelay(SyncMessage.class, new SyncMessage(), SYNC_INTERVAL);
+		} catch (IOException e) {
+			disable(e);
+		}
+	}
+
+	@Override
+	public Behavior<Message> onMessage(Message message) {
+		return switch (message) {
+			case ShardDoneMessage sd -> {
+				if (checkpoint != null) {
+					try {
+						checkpoint.done(sd.shard());
+					} catch (IOException e) {
+						disable(e);
+					}
+				}
+				yield Behaviors.same();
+			}
+
+			case PasswordFoundMessage pf -> {
+				if (checkpoint != null) {
+					try {
+						checkpoint.found(pf.user(), pf.password());
+					} catch (IOException e) {
+						disable(e);
+					}
+				}
+				yield Behaviors.same();
+			}
+
+			case SyncMessage sm -> {
+				if (checkpoint != null) {
+					try {
+						checkpoint.sync();
+					} catch (IOException e) {
+						disable(e);
+					}
+				}
+				yield Behaviors.same();
+			}
+
+			case CompleteMessage cm -> {
+				if (checkpoint != null) {
+					try {
+						checkpoint.compact();
+						checkpoint.close();
+						getContext().getLog().info("--> Checkpoint compacted: {}", file);
+					} catch (IOException e) {
+						disable(e);
+					}
+				}
+				cm.replyTo().tell(new PasswordsRoot.CheckpointCompletedMessage());
+				yield Behaviors.stopped();
+			}
+			default -> Behaviors.unhandled();
+		};
+	}
+
+	// Log the error once and stop writing the checkpoint
+	private void disable(IOException e) {
+		getContext().getLog().error("Error writing the checkpoint {}, checkpointing disabled", file, e);
+		if (checkpoint != null) {
+			try {
+				checkpoint.close();
+			} catch (IOException ignored) {
+				// Already failing
+			}
+		}
+		checkpoint = null;
+	}
+}
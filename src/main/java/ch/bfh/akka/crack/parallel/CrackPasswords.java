@@ -6,61 +6,151 @@
 package ch.bfh.akka.crack.parallel;
 
 import akka.actor.typed.ActorSystem;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.MaskKeyspace;
+import ch.bfh.akka.crack.common.Options;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Main class for the Akka password cracker program.
  */
 public class CrackPasswords {
 
+	// Dispatchers declared in application.conf, also used by the cluster nodes
+	public static final String COMPUTE_DISPATCHER = "crack.compute-dispatcher";
+	public static final String IO_DISPATCHER = "crack.io-dispatcher";
+
+	// Intervals of the progress reports and of the polls of the watch mode, declared in application.conf
+	public static final String PROGRESS_INTERVAL = "crack.progress-interval";
+	static final String WATCH_INTERVAL = "crack.watch-interval";
+
 	/**
 	 * Entry point of the program. Start an actor system and send an initial message to the root actor.
 	 *
-	 * @param args arg[0] = numberOfActors, arg[1] = file name of hashed passwords, arg[2] = file name of cleartext passwords
+	 * @param args arg[0] = numberOfActors (or <code>auto</code>), arg[1] = file name of hashed passwords,
+	 *             arg[2] = file name of cleartext passwords, followed by the optional
+	 *             <code>--compute-threads=N</code>, <code>--io-threads=N</code>, <code>--kernel=scalar|vector</code>
+	 *             <code>--rules=file</code>, <code>--checkpoint=file</code>, <code>--cache=file</code>,
+	 *             <code>--progress=seconds</code> and <code>--watch</code>
 	 */
 	public static void main(String[] args) {
-		/* If we were to run this from the terminal, we'd use this block for argument validation.
-		 * It's commented out here because we're hardcoding some values below for convenience.
-		 */
-        /*
-        if (args.length != 3) {
-            System.err.println("Usage: program-name nbOfActors fileNameHashedPasswords fileNameCleartextPasswords");
-            return;
-        }
-
-        int nbActors = Integer.parseInt(args[0]);  // Parse number of actors
-        String hashedPasswords = args[1];          // Path to file containing hashed passwords
-        String cleartextPasswords = args[2];       // Path to file containing cleartext passwords
+		Options options = Options.parse(args);
+		List<String> positional = options.positional();
+		if (positional.size() != 3) {
+			usage();
+			return;
+		}
 
-        // Check if number of actors is valid (must be 1, 2, or multiple of 2)
-        if (nbActors <= 0 || (nbActors > 1 && nbActors % 2 != 0)) {
-            usage();
-            return;
-        }
-        */
+		int nbActors;
+		int computeThreads;
+		int ioThreads;
+		int progressSeconds;
+		Cracker.Kernel kernel;
+		try {
+			int processors = Runtime.getRuntime().availableProcessors();
+			computeThreads = options.getInt("compute-threads", 0);
+			computeThreads = (computeThreads <= 0) ? processors : computeThreads;
+			ioThreads = options.getInt("io-threads", 2);
+			// Number of actors, bounded by the compute threads: more actors than threads only adds contention
+			nbActors = positional.get(0).equals("auto") ? computeThreads : Integer.parseInt(positional.get(0));
+			kernel = Cracker.Kernel.of(options.get("kernel", "scalar"));
+			progressSeconds = options.getInt("progress", 10);
+		} catch (IllegalArgumentException e) { // Includes NumberFormatException
+			usage();
+			return;
+		}
+		if (nbActors <= 0 || ioThreads <= 0 || progressSeconds < 0) {
+			usage();
+			return;
+		}
+		if (nbActors > computeThreads) {
+			System.out.println("--> " + nbActors + " actors requested, bounded to " + computeThreads + " compute threads");
+			nbActors = computeThreads;
+		}
+		String unavailable = kernel.unavailableReason();
+		if (unavailable != null) {
+			System.out.println("--> Vector kernel not available (" + unavailable + "), using the scalar kernel");
+			kernel = Cracker.Kernel.SCALAR;
+		}
+		String hashedPasswords = positional.get(1);    // Path to file containing hashed passwords
+		String cleartextPasswords = positional.get(2); // Path to file containing cleartext passwords, or a mask
+		if (cleartextPasswords.startsWith(MaskKeyspace.PREFIX)) {
+			try {
+				MaskKeyspace.parse(cleartextPasswords.substring(MaskKeyspace.PREFIX.length()));
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+				return;
+			}
+		}
+		String rules = options.get("rules", "");       // Path to file containing mangling rules, empty for none
+		String checkpoint = options.get("checkpoint", ""); // Path to the checkpoint file, empty for none
+		String cache = options.get("cache", "");           // Path to the credential cache file, empty for none
+		boolean watch = Boolean.parseBoolean(options.get("watch", "false")); // Keep on cracking the appended lines
+		if (watch && !checkpoint.isEmpty()) {
+			System.err.println("--watch and --checkpoint cannot be combined: the watched files change");
+			return;
+		}
 
-		// Hardcoded values for testing without terminal arguments
 		LocalDateTime currentDateTime = LocalDateTime.now(); // Get current timestamp
-		int nbActors = 5_000_000;                                   // Number of actors for parallelism
-		String hashedPasswords = "hashed-passwords.txt";    // File containing hashed passwords
-		String cleartextPasswords = "5-million-passwords.txt"; // File with potential cleartext passwords
 
 		// Start the actor system for parallel password cracking
-		ActorSystem<PasswordsRoot.Message> passwordsRoot = ActorSystem.create(PasswordsRoot.create(), "CrackPasswordsSystem");
+		start(new PasswordsRoot.InitMessage(nbActors, hashedPasswords, cleartextPasswords, kernel,
+				rules.isEmpty() ? null : rules, checkpoint.isEmpty() ? null : checkpoint,
+				cache.isEmpty() ? null : cache, watch), computeThreads, ioThreads,
+				progressSeconds);
 
 		// Logging the initialization and start time
 		System.out.println("--> Crack Passwords Actor System initialized");
 		System.out.println("--> System started at: " + currentDateTime);
+		System.out.println("--> " + nbActors + " actors on " + computeThreads + " compute threads and " + ioThreads
+				+ " I/O threads, " + kernel + " kernel");
+	}
+
+	/**
+	 * Starts an actor system cracking the given files. The system terminates by itself once done,
+	 * see {@link ActorSystem#getWhenTerminated()}.
+	 *
+	 * @param init           the run to start: number of actors, files and kernel
+	 * @param computeThreads threads of the hashing dispatcher
+	 * @param ioThreads       threads of the file reading dispatcher
+	 * @param progressSeconds seconds between two progress reports, 0 for none
+	 * @return the started actor system
+	 */
+	public static ActorSystem<PasswordsRoot.Message> start(PasswordsRoot.InitMessage init, int computeThreads, int ioThreads,
+														   int progressSeconds) {
+		// Size the dispatchers for this host, on top of application.conf
+		Config config = ConfigFactory.parseMap(Map.of(
+				COMPUTE_DISPATCHER + ".thread-pool-executor.fixed-pool-size", computeThreads,
+				IO_DISPATCHER + ".thread-pool-executor.fixed-pool-size", ioThreads,
+				PROGRESS_INTERVAL, progressSeconds + "s"
+		)).withFallback(ConfigFactory.load());
+
+		ActorSystem<PasswordsRoot.Message> passwordsRoot = ActorSystem.create(PasswordsRoot.create(), "CrackPasswordsSystem", config);
 
 		// Sending an initial message to the root actor with the required data
-		passwordsRoot.tell(new PasswordsRoot.InitMessage(nbActors, hashedPasswords, cleartextPasswords));
+		passwordsRoot.tell(init);
+		return passwordsRoot;
 	}
 
 	// Helper method to print usage instructions if the user inputs incorrect arguments
 	private static void usage() {
 		System.err.println("""
-                Usage: program-name nbOfActors fileNameHashedPasswords fileNameCleartextPasswords
-                    where nbOfActors must be 1, 2 or multiple of 2
+                Usage: program-name nbOfActors fileNameHashedPasswords fileNameCleartextPasswords [options]
+                    where nbOfActors is a positive number or auto (one per compute thread)
+                    where fileNameCleartextPasswords may be a mask instead, e.g. mask:?u?l?l?l?d?d
+                Options:
+                    --compute-threads=N  threads of the hashing dispatcher (default: available processors)
+                    --io-threads=N       threads of the file reading dispatcher (default: 2)
+                    --kernel=K           SHA-512 kernel, scalar or vector (default: scalar)
+                    --rules=file         mangling rules applied to every word (default: none)
+                    --checkpoint=file    persist the progress to this file, and resume from it (default: none)
+                    --cache=file         resolve the passwords cracked by earlier runs, and add the new ones (default: none)
+                    --progress=N         print the progress every N seconds, 0 for never (default: 10)
+                    --watch              never end, crack the lines appended to the files (not with a binary word list)
                 """);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.parallel;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import com.typesafe.config.Config;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import scala.Option;
+
+/**
+ * An unbounded mailbox that counts its messages, so that the depth of the mailboxes can
+ * be read as a metric: Akka itself does not expose it. It is the mailbox of every actor of
+ * the compute dispatcher, see application.conf, i.e. of the PasswordsActors.
+ */
+public class MeteredMailbox implements MailboxType, ProducesMessageQueue<MeteredMailbox.MeteredQueue> {
+
+	// The queues of the live actors, in this JVM
+	private static final Set<MeteredQueue> QUEUES = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Constructor called by Akka, with the configuration of the dispatcher.
+	 *
+	 * @param settings the settings of the actor system
+	 * @param config   the configuration of the mailbox
+	 */
+	public MeteredMailbox(ActorSystem.Settings settings, Config config) {
+		// Nothing to configure
+	}
+
+	/**
+	 * @return the number of messages waiting in all the metered mailboxes of this JVM
+	 */
+	public static int depth() {
+		int depth = 0;
+		for (MeteredQueue queue : QUEUES) {
+			depth += queue.numberOfMessages();
+		}
+		return depth;
+	}
+
+	@Override
+	public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+		MeteredQueue queue = new MeteredQueue();
+		QUEUES.add(queue);
+		return queue;
+	}
+
+	/**
+	 * The message queue of one actor: a lock-free queue and its size.
+	 */
+	public static class MeteredQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+		private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger(); // ConcurrentLinkedQueue.size() is O(n)
+
+		@Override
+		public void enqueue(ActorRef receiver, Envelope handle) {
+			queue.offer(handle);
+			size.incrementAndGet();
+		}
+
+		@Override
+		public Envelope dequeue() {
+			Envelope handle = queue.poll();
+			if (handle != null) {
+				size.decrementAndGet();
+			}
+			return handle;
+		}
+
+		@Override
+		public int numberOfMessages() {
+			return size.get();
+		}
+
+		@Override
+		public boolean hasMessages() {
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+			QUEUES.remove(this);
+			for (Envelope handle = dequeue(); handle != null; handle = dequeue()) {
+				deadLetters.enqueue(owner, handle);
+			}
+		}
+	}
+}
@@ -6,14 +6,9 @@
 
 package ch.bfh.akka.crack.parallel;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import akka.actor.typed.ActorRef;
@@ -21,24 +16,53 @@ import akka.actor.typed.Behavior;
 import akka.actor.typed.javadsl.AbstractOnMessageBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
+import ch.bfh.akka.crack.common.BatchEvent;
+import ch.bfh.akka.crack.common.CandidateSink;
+import ch.bfh.akka.crack.common.CandidateSource;
+import ch.bfh.akka.crack.common.CrackMetrics;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.HashKernel;
+import ch.bfh.akka.crack.common.RuleSet;
+import ch.bfh.akka.crack.common.Shard;
+import ch.bfh.akka.crack.common.TargetIndex;
 
 /**
  * The behavior of a password cracker actor.
- * This actor is responsible for taking a portion of the password file,
- * hashing them, and comparing them to the given hashed password file.
- * Once the actor finishes its job, it notifies the root actor.
+ * This actor repeatedly asks the root actor for a batch of the password file,
+ * hashes its passwords, and compares them to the target index built by the root.
+ * Every password found is sent to the root at once, without waiting for the end of the
+ * batch, and the totals of the batch are added to the shared {@link CrackMetrics} and recorded as a
+ * {@link BatchEvent} for the flight recorder.
+ * Once the root has no more work, the actor notifies the root and stops.
+ * <p>
+ * In watch mode, the users appended to the hashed passwords file come as a new generation
+ * of targets ({@link TargetsMessage}), with a cracker of their own: every batch names the
+ * generation it is cracked for, so that new users are searched in the whole word list and
+ * new words only for the users not cracked yet.
  */
 public class PasswordsActor extends AbstractOnMessageBehavior<PasswordsActor.Message> {
 
-	// Reference to the root actor (PasswordsRoot) to send the FinishedMessage after work is done
+	// Reference to the root actor (PasswordsRoot) to ask for work and send the FinishedMessage
 	private final ActorRef<PasswordsRoot.Message> rootRef;
 
 	// A unique identifier for this actor instance, useful for logging and tracking
 	private final String actorId;
 
+	// The word list and the cracking loop of this actor, known once the SetupMessage is handled
+	private CandidateSource cleartextPasswords;
+	private final List<Cracker> crackers = new ArrayList<>(); // One per generation of targets
+	private final List<CandidateSink> candidates = new ArrayList<>(); // The crackers, behind the mangling rules if any
+	private Cracker.Kernel kernel;
+	private RuleSet rules;
+	private CrackMetrics metrics; // The counters of the job, shared by the actors of this JVM
+
+	// The number of passwords found in the current batch, each sent to the root as soon as found
+	private int found;
+
 	/**
 	 * Returns a hashed string using a specified algorithm and the text to hash.
 	 * The result is encoded in Base64 format for easy comparison.
+	 * Kept for compatibility, the cracking loop uses the allocation-free {@link HashKernel}.
 	 *
 	 * @param algorithm  Algorithm used for hashing, e.g., SHA-512
 	 * @param textToHash The plain text (e.g., password + salt) to be hashed
@@ -46,15 +70,7 @@ public class PasswordsActor extends AbstractOnMessageBehavior<PasswordsActor.Mes
 	 * @throws NoSuchAlgorithmException if the specified algorithm is invalid
 	 */
 	public static String hash(String algorithm, String textToHash) throws NoSuchAlgorithmException {
-		// Get an instance of the digest algorithm
-		MessageDigest digest = MessageDigest.getInstance(algorithm);
-
-		// Convert the input text to bytes and hash it
-		byte[] byteOfTextToHash = textToHash.getBytes(StandardCharsets.UTF_8);
-		byte[] hashedByteArray = digest.digest(byteOfTextToHash);
-
-		// Return the hash as a base64-encoded string
-		return Base64.getEncoder().encodeToString(hashedByteArray);
+		return HashKernel.hash(algorithm, textToHash);
 	}
 
 	/**
@@ -65,13 +81,25 @@ public class PasswordsActor extends AbstractOnMessageBehavior<PasswordsActor.Mes
 
 	/**
 	 * Setup message to initialize the actor with necessary data such as
-	 * file names and the range of lines to process.
+	 * the target index built by the root, the file name of the cleartext passwords,
+	 * the SHA-512 kernel to use, the mangling rules (null for none) and the metrics to record the batches in.
 	 */
-	public record SetupMessage(ActorRef<PasswordsRoot.Message> rootRef, String hashedPasswords,
-							   String cleartextPasswords, int startLine, int endLine) implements Message {}
+	public record SetupMessage(ActorRef<PasswordsRoot.Message> rootRef, TargetIndex targets,
+							   String cleartextPasswords, Cracker.Kernel kernel, RuleSet rules,
+							   CrackMetrics metrics) implements Message {}
+
+	// A batch of work: the newline-aligned byte range of the cleartext passwords to process,
+	// for the targets of one generation (0 for those of the SetupMessage)
+	public record WorkMessage(int generation, Shard shard) implements Message, CborSerializable {}
+
+	// Watch mode: the users appended to the hashed passwords file, numbered from 1 in order
+	public record TargetsMessage(int generation, TargetIndex targets) implements Message {}
+
+	// Sent by the root to every actor when a user has been cracked, so that it is not searched anymore
+	public record UserCrackedMessage(String user) implements Message, CborSerializable {}
 
-	// A message to signal that the actor has finished its task
-	public record FinishedMessage() implements Message {}
+	// Sent by the root when the whole word list has been handed out
+	public record NoMoreWorkMessage() implements Message, CborSerializable {}
 
 	/**
 	 * Static factory method to create a new PasswordsActor.
@@ -103,116 +131,138 @@ public class PasswordsActor extends AbstractOnMessageBehavior<PasswordsActor.Mes
 		// Handle incoming messages by type
 		return switch (message) {
 			case SetupMessage sm -> handleSetup(sm); // If it's a SetupMessage, handle the setup
+			case WorkMessage wm -> handleWork(wm); // Crack one batch and ask for the next one
+			case TargetsMessage tm -> handleTargets(tm);
+			case UserCrackedMessage uc -> {
+				// Drop the user from this actor's view of every generation of targets
+				crackers.forEach(cracker -> cracker.retire(uc.user()));
+				yield Behaviors.same();
+			}
+			case NoMoreWorkMessage nm -> {
+				// Nothing left to do: notify the root actor and stop
+				rootRef.tell(new PasswordsRoot.FinishedMessage());
+				yield Behaviors.stopped();
+			}
 			default -> Behaviors.unhandled(); // Otherwise, mark it as unhandled
 		};
 	}
 
 	/**
-	 * Handles the SetupMessage, reading the necessary password files and
-	 * initiating the password cracking process.
+	 * Handles the SetupMessage, preparing the word list and the cracking loop,
+	 * then asks the root actor for the first batch.
 	 *
-	 * @param setupMessage The setup message containing file names and line ranges
-	 * @return Behavior The actor's new behavior (in this case, it stays the same)
+	 * @param setupMessage The setup message containing the target index and the file name
+	 * @return Behavior The actor's new behavior
 	 */
 	private Behavior<Message> handleSetup(SetupMessage setupMessage) {
-		// Log that the setup has been received, indicating the start and end line for this actor's task
-		getContext().getLog().info("{}: Received setup message for lines {} to {}...", actorId, setupMessage.startLine(), setupMessage.endLine());
+		getContext().getLog().info("{}: Received setup message, requesting work...", actorId);
 
-		// Try to read the files and start the password-cracking process
 		try {
-			List<String> hashedLines = readFile(setupMessage.hashedPasswords());
-			List<String> cleartextPasswords = readFileRange(setupMessage.cleartextPasswords(), setupMessage.startLine(), setupMessage.endLine());
-
-			// Attempt to crack the passwords by comparing hashes
-			crackPasswords(hashedLines, cleartextPasswords);
-		} catch (IOException | NoSuchAlgorithmException e) {
-			// Log any errors that occur during file reading or password cracking
-			getContext().getLog().error("{}: Error occurred during password cracking.", actorId, e);
-		} finally {
-			// Once the actor is done with its work, send a FinishedMessage to the root actor
+			cleartextPasswords = CandidateSource.open(setupMessage.cleartextPasswords()); // Text, binary or mask
+			kernel = setupMessage.kernel();
+			rules = setupMessage.rules();
+			addGeneration(setupMessage.targets());
+			metrics = setupMessage.metrics();
+		} catch (IOException | NoSuchAlgorithmException | IllegalStateException e) {
+			getContext().getLog().error("{}: Error occurred during setup.", actorId, e);
 			rootRef.tell(new PasswordsRoot.FinishedMessage());
+			return Behaviors.stopped();
 		}
 
-		// Keep the same behavior after processing this message
+		rootRef.tell(new PasswordsRoot.RequestWorkMessage(getContext().getSelf(), 0, 0, false));
 		return Behaviors.same();
 	}
 
 	/**
-	 * Reads all lines from the specified file.
+	 * Prepares the cracking loop of a new generation of targets.
 	 *
-	 * @param fileName The name of the file to read
-	 * @return A list of lines from the file
-	 * @throws IOException If an I/O error occurs
+	 * @param targetsMessage the users appended to the hashed passwords file
+	 * @return Behavior The actor's new behavior
 	 */
-	private List<String> readFile(String fileName) throws IOException {
-		List<String> lines = new LinkedList<>();
-		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-			String line = br.readLine();
-			while (line != null) {
-				lines.add(line); // Add each line to the list
-				line = br.readLine(); // Read the next line
+	private Behavior<Message> handleTargets(TargetsMessage targetsMessage) {
+		try {
+			if (targetsMessage.generation() != crackers.size()) {
+				throw new IllegalStateException("Generation " + targetsMessage.generation() + " received after "
+						+ (crackers.size() - 1));
 			}
+			addGeneration(targetsMessage.targets());
+		} catch (NoSuchAlgorithmException | IllegalStateException e) {
+			getContext().getLog().error("{}: Error occurred preparing generation {}.", actorId, targetsMessage.generation(), e);
+			rootRef.tell(new PasswordsRoot.FinishedMessage());
+			return Behaviors.stopped();
 		}
-		return lines;
+		return Behaviors.same();
 	}
 
-	/**
-	 * Reads a range of lines from a file, starting from startLine to endLine.
-	 *
-	 * @param fileName  The file to read from
-	 * @param startLine The first line to read (inclusive)
-	 * @param endLine   The last line to read (inclusive)
-	 * @return A list of lines within the specified range
-	 * @throws IOException If an I/O error occurs
-	 */
-	private List<String> readFileRange(String fileName, int startLine, int endLine) throws IOException {
-		List<String> lines = new LinkedList<>();
-		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-			String line = br.readLine();
-			int lineNumber = 0;
-			// Read through the file until the desired range is reached
-			while ((line = br.readLine()) != null) {
-				if (lineNumber >= startLine && lineNumber <= endLine) {
-					lines.add(line); // Add the line to the list if within range
-				}
-				lineNumber++;
-				if (lineNumber > endLine) {
-					break; // Stop reading once we've passed the end line
-				}
-			}
-		}
-		return lines;
+	// One cracker per actor and generation: digest, candidate buffer and output array are reused for every candidate
+	private void addGeneration(TargetIndex targets) throws NoSuchAlgorithmException {
+		Cracker cracker = new Cracker(targets, (user, candidate, offset, length) ->
+				foundPassword(user, Cracker.password(candidate, offset, length)),
+				kernel);
+		crackers.add(cracker);
+		// The rules expand each word of this actor's batches on the fly, into the cracker
+		candidates.add((rules == null) ? cracker : rules.mangle(cracker));
+	}
+
+	// Report a password at once: the rest of the batch may take a while, the root prints it right away
+	private void foundPassword(String user, String password) {
+		found++;
+		rootRef.tell(new PasswordsRoot.FoundMessage(user, password));
 	}
 
 	/**
-	 * Cracks the passwords by comparing each hashed password with the cleartext passwords.
+	 * Cracks one batch by hashing each of its cleartext passwords once per distinct salt
+	 * and probing the salt group of the target index. The passwords found are sent to
+	 * the root as they are found, then the measured latency is sent back with the next work request,
+	 * so that the root can adapt the batch size. A binary word list is read into memory first,
+	 * so that the time spent on I/O is measured apart from the time spent hashing; the pages
+	 * of a text word list are read while its lines are hashed.
 	 *
-	 * @param hashedLines      A list of hashed passwords from the file
-	 * @param cleartextPasswords A list of cleartext passwords to test against
-	 * @throws NoSuchAlgorithmException If the hashing algorithm isn't available
+	 * @param workMessage The batch to process
+	 * @return Behavior The actor's new behavior (in this case, it stays the same)
 	 */
-	private void crackPasswords(List<String> hashedLines, List<String> cleartextPasswords) throws NoSuchAlgorithmException {
-		// Loop through each line in the hashed passwords file
-		for (String lineFile : hashedLines) {
-			String[] splitLine = lineFile.split(" ");
-
-			// Check if the line is properly formatted (user, salt, hashed password)
-			if (splitLine.length != 3) {
-				getContext().getLog().error("Malformed line in hashed passwords file: {}", lineFile);
-				continue; // Skip this malformed line
-			}
-
-			String user = splitLine[0]; // Extract the username
-			String salt = splitLine[1]; // Extract the salt used for hashing
-			String hashedPassword = splitLine[2]; // Extract the hashed password
-
-			// Try each cleartext password and compare its hash with the hashed password
-			for (String pwd : cleartextPasswords) {
-				String hashedPwd = hash("SHA-512", pwd + salt); // Hash the cleartext password with the salt
-				if (hashedPwd.equals(hashedPassword)) { // If the hashes match, we found the password
-					getContext().getLog().info("{}: Password found for user {}: {}", actorId, user, pwd);
-				}
+	private Behavior<Message> handleWork(WorkMessage workMessage) {
+		BatchEvent event = new BatchEvent();
+		event.begin();
+		long start = System.nanoTime();
+		long ioNanos = 0;
+		Cracker cracker = crackers.get(workMessage.generation());
+		CandidateSink sink = candidates.get(workMessage.generation());
+		long candidatesBefore = cracker.candidates();
+		long hashesBefore = cracker.hashes();
+		boolean failed = false;
+		try {
+			if (workMessage.shard().end() > cleartextPasswords.size()) {
+				cleartextPasswords = CandidateSource.open(cleartextPasswords.name()); // Appended to meanwhile
 			}
+			cleartextPasswords.load(workMessage.shard());
+			ioNanos = System.nanoTime() - start;
+			// Candidate-outer: each line of the batch is hashed as bytes, once per distinct salt
+			cleartextPasswords.forEach(workMessage.shard(), sink);
+			sink.flush(); // Test the candidates still waiting for a full set of vector lanes
+		} catch (IOException e) {
+			// Reported with the next work request: the root hands the batch out again, the actor keeps on working
+			getContext().getLog().error("{}: Error occurred while cracking bytes {} to {}.", actorId,
+					workMessage.shard().start(), workMessage.shard().end(), e);
+			failed = true;
+		}
+		long nanos = System.nanoTime() - start;
+		long batchCandidates = cracker.candidates() - candidatesBefore;
+		long batchHashes = cracker.hashes() - hashesBefore;
+		metrics.recordBatch(workMessage.shard().length(), batchCandidates, batchHashes, ioNanos, nanos);
+		event.end();
+		if (event.shouldCommit()) {
+			event.worker = actorId;
+			event.start = workMessage.shard().start();
+			event.bytes = workMessage.shard().length();
+			event.candidates = batchCandidates;
+			event.hashes = batchHashes;
+			event.ioNanos = ioNanos;
+			event.found = found;
+			event.commit();
 		}
+		found = 0;
+		rootRef.tell(new PasswordsRoot.RequestWorkMessage(getContext().getSelf(), workMessage.shard().length(), nanos, failed));
+		return Behaviors.same();
 	}
-}
\ No newline at end of file
+}
@@ -7,51 +7,232 @@ package ch.bfh.akka.crack.parallel;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.Signal;
+import akka.actor.typed.Terminated;
 import akka.actor.typed.javadsl.AbstractOnMessageBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import akka.actor.typed.javadsl.TimerScheduler;
+import akka.actor.typed.receptionist.Receptionist;
+import akka.actor.typed.receptionist.ServiceKey;
+import ch.bfh.akka.crack.common.BinaryWordlist;
+import ch.bfh.akka.crack.common.CandidateSource;
+import ch.bfh.akka.crack.common.Checkpoint;
+import ch.bfh.akka.crack.common.CrackMetrics;
+import ch.bfh.akka.crack.common.CredentialCache;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.HashScheme;
+import ch.bfh.akka.crack.common.MappedWordlist;
+import ch.bfh.akka.crack.common.MaskKeyspace;
+import ch.bfh.akka.crack.common.RuleSet;
+import ch.bfh.akka.crack.common.Shard;
+import ch.bfh.akka.crack.common.TargetIndex;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Root actor for the Akka password cracking system. It initializes and manages worker actors.
+ * <p>
+ * Work is handed out on demand: every worker sends a {@link RequestWorkMessage} and receives
+ * the next batch of the word list, starting at a cursor. The batch size adapts to the
+ * measured per-batch latency, and shrinks towards the end of the word list, so that
+ * no worker is left with a large chunk while the others are idle. In the ranked head of a
+ * binary word list converted by frequency (see {@link BinaryWordlist#convert}), where the
+ * likeliest candidates are, a batch is also at most a worker's share of the head before it:
+ * the batches grow from the minimum, so that every worker sweeps the most frequent
+ * passwords first instead of one worker taking all of them. Other word lists are handed out
+ * in their order, with the adaptive batch size only.
+ * <p>
+ * The root keeps the set of users not cracked yet. Found passwords are reported by the
+ * workers as soon as they are found and logged at once, every worker is told to stop
+ * searching a cracked user, and the run ends as soon as no user is left, even if the word
+ * list is not exhausted. The results table is printed at the end.
+ * <p>
+ * With a checkpoint file, the processed shards and the found passwords are reported to a
+ * {@link CheckpointActor}, which persists them off the hashing path. A run restarted on the
+ * same inputs resumes from the checkpoint: only the ranges not processed yet are handed out.
+ * A batch that a worker failed to read is never recorded as done: it is handed out again, and
+ * the run ends with an error once the same batch failed again after a few retries.
+ * <p>
+ * With a {@link CredentialCache}, the users whose hashed password was cracked by any earlier
+ * run are resolved before any work is handed out, by one lookup and one hash each; only the
+ * others are searched. The passwords found are written back to the cache on the I/O dispatcher.
+ * <p>
+ * As the coordinator of a cluster ({@link #createCoordinator()}), the root spawns no worker:
+ * it registers with the receptionist under {@link #COORDINATOR_KEY} and hands out work to
+ * the PasswordsActors of the worker nodes, which are watched as they show up. The batch of
+ * a worker that is lost is handed out again; the run ends once every batch is done.
+ * <p>
+ * The workers record the totals of every batch in a {@link CrackMetrics}, registered over
+ * JMX; the root adds the progress of the job and prints it every
+ * <code>crack.progress-interval</code>, with the rates and an ETA.
+ * <p>
+ * In watch mode, the run does not end: every <code>crack.watch-interval</code> the root
+ * reads the complete lines appended to both files since the last poll. The appended words
+ * are handed out for the users not cracked yet only; the appended users form a new
+ * generation of targets, sent to every worker and searched in the whole word list. The
+ * work of an update is thus proportional to the update, and every password found is
+ * printed at once.
  */
 public class PasswordsRoot extends AbstractOnMessageBehavior<PasswordsRoot.Message> {
 
+	// Wanted duration of one batch: long enough to amortize the messages, short enough to balance the tail
+	private static final long TARGET_BATCH_NANOS = 200_000_000L;
+	private static final long MIN_BATCH_BYTES = 4 * 1024;
+	private static final long MAX_BATCH_BYTES = 64 * 1024 * 1024;
+	private static final long INITIAL_BATCH_BYTES = 64 * 1024;
+	// Times a batch is handed out again after a failed read, before the run gives up
+	private static final int MAX_BATCH_RETRIES = 3;
+
+	/**
+	 * The key under which the coordinator of a cluster registers with the receptionist.
+	 */
+	public static final ServiceKey<Message> COORDINATOR_KEY = ServiceKey.create(Message.class, "crack-coordinator");
+
+	// Keys of the progress report and watch mode timers
+	private static final String PROGRESS_TIMER = "progress";
+	private static final String WATCH_TIMER = "watch";
+
+	private final boolean remoteWorkers; // Coordinator of a cluster: the workers run on other nodes
+	private final TimerScheduler<Message> timers; // Schedules the progress reports
+	private final CrackMetrics metrics = new CrackMetrics(); // Counters of the job, recorded by the local workers
+
+	private int nbActors; // Number of worker actors to create, from the InitMessage
+	private Cracker.Kernel kernel; // SHA-512 kernel of the workers, from the InitMessage
 	private int nbActorsCreated = 0; // Tracks the number of actors created
 	private int nbActorsFinished = 0; // Tracks how many actors have finished their work
 	private long startTime; // To track execution time
-	private ActorRef<PasswordsActor.Message> passwordsActor; // Reference to worker actors
+	private CandidateSource clearTextPasswords; // The word list handed out in batches, text or binary
+	private long wordsEnd; // End of the part of the word list handed out, its size unless watched
+	private long rankedEnd; // End of the head of the word list ranked by frequency, 0 if it is not ranked
+	private final Deque<Batch> pending = new ArrayDeque<>(); // Ranges not handed out yet, line aligned, in order
+	private long pendingBytes = 0; // Total length of the pending ranges
+	private long batchBytes = INITIAL_BATCH_BYTES; // Current batch size, adapted to the measured latency
+	private final List<ActorRef<PasswordsActor.Message>> workers = new ArrayList<>(); // The worker actors
+	private final Map<ActorRef<PasswordsActor.Message>, Batch> inFlight = new HashMap<>(); // Batch of each worker
+	private final Deque<ActorRef<PasswordsActor.Message>> idle = new ArrayDeque<>(); // Workers waiting for a re-queued batch or an update
+	private final Map<BatchStart, Integer> retries = new HashMap<>(); // Failed reads of the batches handed out again
+	private String checkpointFile; // Checkpoint file name from the InitMessage, null for none
+	private ActorRef<CheckpointActor.Message> checkpoint; // Persists the progress, null without checkpoint file
+	private CredentialCache cache; // Cracked credentials of earlier runs, null without cache file
+	private final List<TargetIndex> generations = new ArrayList<>(); // The hashed passwords, then every batch of appended users
+	private Executor io; // The I/O dispatcher, for the cache writes
+	private CompletableFuture<Void> cacheWrites = CompletableFuture.completedFuture(null); // Last cache write, run in order, failed or not
+	private int closing = 0; // Number of files still to complete (checkpoint, cache) before shutting down
+	private final Set<String> outstanding = new LinkedHashSet<>(); // Users not cracked yet
+	private final Map<String, String> results = new LinkedHashMap<>(); // Cracked users and their password, in order found
+	private boolean finished = false; // Set once the results have been printed
+	private boolean watch; // Watch mode, from the InitMessage
+	private String hashedPasswords; // Hashed passwords file name, from the InitMessage
+	private long hashedEnd; // Watch mode: end of the part of the hashed passwords file read
+	private HashScheme hashedScheme; // Watch mode: the scheme of the lines below the part read
+	private boolean polling = false; // Watch mode: a poll of the files is running on the I/O dispatcher
 
 	/**
 	 * Interface representing the messages exchanged with the root actor.
 	 */
 	public interface Message {}
 
-	// Message to initialize the password cracking with number of actors and file paths
-	public record InitMessage(int nbActors, String hashedPasswords, String cleartextPasswords) implements Message {}
+	// Message to initialize the password cracking with number of actors, file paths, SHA-512 kernel,
+	// the optional mangling rules, checkpoint and credential cache files (null for none), and the watch mode
+	public record InitMessage(int nbActors, String hashedPasswords, String cleartextPasswords,
+							  Cracker.Kernel kernel, String rules, String checkpoint, String cache,
+							  boolean watch) implements Message {}
+
+	// Message to self once the files have been read on the I/O dispatcher; hashed holds the targets and, in watch mode,
+	// where the next poll starts; wordsEnd is the end of the word list to hand out; resumed is null if there is
+	// nothing to resume, cache null without cache file, and cached the passwords of the cache that match their user
+	private record LoadedMessage(TargetIndex.Tail hashed, List<String> malformed, CandidateSource clearTextPasswords,
+								 long wordsEnd, RuleSet rules, String fingerprint, Checkpoint.State resumed,
+								 CredentialCache cache, Map<String, String> cached, Throwable failure) implements Message {}
+
+	// Watch mode: message to self with the complete lines appended to both files since the last poll
+	private record DeltaMessage(TargetIndex.Tail hashed, List<String> malformed, CandidateSource clearTextPasswords,
+								long wordsEnd, Map<String, String> cached, Throwable failure) implements Message {}
+
+	// A range of the word list to crack for one generation of targets
+	private record Batch(int generation, Shard shard) {}
+
+	// Where a batch starts: a batch handed out again may be cut shorter, but starts at the same position
+	private record BatchStart(int generation, long start) {}
+
+	// Message to self once the password of a user is written to the cache; failure is null on success
+	private record CacheWrittenMessage(String user, Throwable failure) implements Message {}
+
+	// Message to self once the pending cache writes are done and the cache is closed; failure is null on success
+	private record CacheClosedMessage(Throwable failure) implements Message {}
+
+	// Message sent by actors asking for a batch; carries the size and duration of the previous batch (0 if none),
+	// and whether reading it failed, in which case it is handed out again instead of being recorded as done
+	public record RequestWorkMessage(ActorRef<PasswordsActor.Message> worker, long lastBatchBytes,
+									 long lastBatchNanos, boolean lastBatchFailed) implements Message, CborSerializable {}
+
+	// A password found by an actor
+	public record FoundMessage(String user, String password) implements Message, CborSerializable {}
 
 	// Message sent by actors when they finish cracking
-	public record FinishedMessage() implements Message {}
+	public record FinishedMessage() implements Message, CborSerializable {}
+
+	// Sent by the checkpoint actor once the checkpoint is compacted
+	public record CheckpointCompletedMessage() implements Message {}
+
+	// Timer message to print the progress of the job
+	private record ProgressMessage() implements Message {}
+
+	// Timer message to look for lines appended to the files, in watch mode
+	private record WatchMessage() implements Message {}
 
 	// Create the root actor behavior
 	public static Behavior<Message> create() {
-		return Behaviors.setup(context -> new PasswordsRoot(context));
+		return Behaviors.setup(context -> Behaviors.withTimers(timers -> new PasswordsRoot(context, timers, false)));
+	}
+
+	// Create the behavior of the coordinator of a cluster, handing out work to the worker nodes
+	public static Behavior<Message> createCoordinator() {
+		return Behaviors.setup(context -> Behaviors.withTimers(timers -> new PasswordsRoot(context, timers, true)));
 	}
 
-	private PasswordsRoot(ActorContext<Message> context) {
+	private PasswordsRoot(ActorContext<Message> context, TimerScheduler<Message> timers, boolean remoteWorkers) {
 		super(context);
+		this.timers = timers;
+		this.remoteWorkers = remoteWorkers;
 	}
 
 	@Override
 	public Behavior<Message> onMessage(Message message) {
 		return switch (message) {
 			case InitMessage im -> {
-				createPasswordsActors(im); // Start worker actors
 				this.startTime = System.nanoTime(); // Record start time
+				loadFiles(im); // Read the files off the default dispatcher
+				yield Behaviors.same();
+			}
+
+			case LoadedMessage lm -> {
+				createPasswordsActors(lm); // Start worker actors
+				yield Behaviors.same();
+			}
+
+			case RequestWorkMessage rw -> {
+				handOutWork(rw);
+				yield Behaviors.same();
+			}
+
+			case FoundMessage found -> {
+				handleFound(found);
 				yield Behaviors.same();
 			}
 
@@ -61,76 +242,609 @@ public class PasswordsRoot extends AbstractOnMessageBehavior<PasswordsRoot.Messa
 
 				// Check if all actors have completed their task
 				if (nbActorsFinished == nbActorsCreated) {
-					long durationNanos = System.nanoTime() - startTime; // Calculate total execution time
-					long durationMillis = durationNanos / 1_000_000;
-					long seconds = (durationMillis / 1_000) % 60;
-					long minutes = (durationMillis / (1_000 * 60)) % 60;
-					long hours = (durationMillis / (1_000 * 60 * 60)) % 24;
-					String formattedDuration = String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds, durationMillis % 1_000);
-					getContext().getLog().info("--> All actors have finished. Total duration: {}", formattedDuration);
-					sendFinishedMessage();
+					getContext().getLog().info("--> All actors have finished. Total duration: {}", formatDuration());
+					finish();
+				}
+				yield Behaviors.same();
+			}
+
+			case CheckpointCompletedMessage cc -> {
+				closed();
+				yield Behaviors.same();
+			}
+
+			case CacheWrittenMessage cw -> {
+				if (cw.failure() != null) {
+					getContext().getLog().warn("Error writing the password of {} to the credential cache", cw.user(), cw.failure());
+				}
+				yield Behaviors.same();
+			}
+
+			case CacheClosedMessage cc -> {
+				if (cc.failure() != null) {
+					getContext().getLog().warn("Error closing the credential cache", cc.failure());
 				}
+				closed();
+				yield Behaviors.same();
+			}
+
+			case ProgressMessage pm -> {
+				getContext().getLog().info("--> Progress: {}", metrics.report());
+				yield Behaviors.same();
+			}
+
+			case WatchMessage wm -> {
+				poll();
+				yield Behaviors.same();
+			}
+
+			case DeltaMessage dm -> {
+				handleDelta(dm);
 				yield Behaviors.same();
 			}
 			default -> Behaviors.unhandled();
 		};
 	}
 
-	// Helper method to create worker actors for password cracking
-	private Behavior<PasswordsRoot.Message> createPasswordsActors(InitMessage message) {
+	@Override
+	public Behavior<Message> onSignal(Signal signal) throws Exception {
+		if (signal instanceof Terminated terminated) {
+			workerLost(terminated);
+			return Behaviors.same();
+		}
+		return super.onSignal(signal);
+	}
+
+	// Helper method to read the hashed passwords and open the word list on the I/O dispatcher
+	private void loadFiles(InitMessage message) {
 		this.getContext().getLog().info("-->> handling InitMessage");
+		this.nbActors = message.nbActors();
+		this.kernel = message.kernel();
+		this.checkpointFile = message.checkpoint();
+		this.watch = message.watch() && !remoteWorkers;
+		this.hashedPasswords = message.hashedPasswords();
 
+		io = getContext().getSystem().dispatchers().lookup(DispatcherSelector.fromConfig(CrackPasswords.IO_DISPATCHER));
+		boolean watched = watch;
+		CompletableFuture<LoadedMessage> loaded = CompletableFuture.supplyAsync(() -> {
+			try {
+				// Parse and index the hashed passwords once; malformed lines are collected for the root to report
+				List<String> malformed = new ArrayList<>();
+				// When watched, a last line without newline may still be written to: it is read by the next poll
+				TargetIndex.Tail hashed = watched
+						? TargetIndex.tail(message.hashedPasswords(), 0, HashScheme.AUTO, malformed::add)
+						: new TargetIndex.Tail(TargetIndex.load(message.hashedPasswords(), malformed::add), 0, HashScheme.AUTO);
+				TargetIndex targets = hashed.targets();
+				RuleSet rules = (message.rules() == null) ? null : RuleSet.load(Path.of(message.rules()));
+				// Only the size of the cleartext passwords is read, the actors pull batches of it
+				CandidateSource clearTextPasswords = CandidateSource.open(message.cleartextPasswords());
+				long wordsEnd = clearTextPasswords.size();
+				if (watched && clearTextPasswords instanceof BinaryWordlist) {
+					throw new IOException("A binary word list cannot be watched: " + message.cleartextPasswords());
+				}
+				if (watched && clearTextPasswords instanceof MappedWordlist text) {
+					wordsEnd = text.completeEnd(0);
+				}
+				// The checkpoint of an earlier run is only resumed if it was made for the same inputs
+				String fingerprint = null;
+				Checkpoint.State resumed = null;
+				if (message.checkpoint() != null) {
+					List<Path> inputs = new ArrayList<>(List.of(Path.of(message.hashedPasswords())));
+					if (clearTextPasswords.path() != null) {
+						inputs.add(clearTextPasswords.path());
+					}
+					if (message.rules() != null) {
+						inputs.add(Path.of(message.rules()));
+					}
+					// A mask has no file: its text identifies the keyspace
+					fingerprint = Checkpoint.fingerprint(inputs,
+							(clearTextPasswords.path() == null) ? List.of(clearTextPasswords.name()) : List.of());
+					resumed = Checkpoint.read(Path.of(message.checkpoint()), fingerprint);
+				}
+				// The users cracked by earlier runs, checked with one hash each
+				CredentialCache cache = null;
+				Map<String, String> cached = Map.of();
+				if (message.cache() != null) {
+					cache = CredentialCache.open(Path.of(message.cache()));
+					try {
+						cached = cache.resolve(targets);
+					} catch (IOException e) {
+						cache.close();
+						throw e;
+					}
+				}
+				return new LoadedMessage(hashed, malformed, clearTextPasswords, wordsEnd, rules, fingerprint, resumed, cache,
+						cached, null);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, io);
+		getContext().pipeToSelf(loaded, (result, failure) -> (failure == null) ? result : new LoadedMessage(null, null, null, 0, null, null, null, null, null, failure));
+	}
+
+	// Helper method to create worker actors for password cracking, on the compute dispatcher
+	private void createPasswordsActors(LoadedMessage message) {
+		if (message.failure() != null) {
+			getContext().getLog().error("Error reading the password, rules or cache files", message.failure());
+			sendFinishedMessage();
+			return;
+		}
+
+		TargetIndex targets = message.hashed().targets();
+		generations.add(targets);
+		hashedEnd = message.hashed().end();
+		hashedScheme = message.hashed().scheme();
+		cache = message.cache();
+		for (String line : message.malformed()) {
+			getContext().getLog().error("Malformed line in hashed passwords file: {}", line);
+		}
+		getContext().getLog().info("--> Indexed {} users with {} distinct salts, {} KB off-heap", targets.size(),
+				targets.groupCount(), targets.offHeapBytes() / 1024);
+		if (message.rules() != null) {
+			getContext().getLog().info("--> Every word is expanded by {} mangling rules", message.rules().size());
+		}
+		outstanding.addAll(targets.users());
+		if (outstanding.isEmpty() && !watch) {
+			getContext().getLog().info("--> No user to crack");
+			finish();
+			return;
+		}
+		clearTextPasswords = message.clearTextPasswords();
+		wordsEnd = message.wordsEnd();
+		if (clearTextPasswords instanceof BinaryWordlist binary) {
+			getContext().getLog().info("--> Binary word list of {} words", binary.count());
+			if (binary.byFrequency()) {
+				rankedEnd = binary.rankedCount();
+				getContext().getLog().info("--> The first {} words are ranked by frequency", rankedEnd);
+			}
+		} else if (clearTextPasswords instanceof MaskKeyspace mask) {
+			getContext().getLog().info("--> Mask of {} candidates of {} characters", mask.size(), mask.length());
+		}
+		String fileName = clearTextPasswords.name();
+
+		// Resume the earlier run, if any, and start persisting the progress
+		if (checkpointFile != null) {
+			Checkpoint.State state = (message.resumed() == null) ? Checkpoint.State.empty() : message.resumed();
+			if (message.resumed() != null) {
+				getContext().getLog().info("--> Resuming from {}: {} of {} bytes done, {} passwords found", checkpointFile,
+						state.done().covered(), clearTextPasswords.size(), state.found().size());
+			}
+			state.found().forEach((user, password) -> {
+				if (outstanding.remove(user)) {
+					results.put(user, password);
+				}
+			});
+			state.done().gaps(clearTextPasswords.size()).forEach(gap -> pending.add(new Batch(0, gap)));
+			checkpoint = getContext().spawn(CheckpointActor.create(Path.of(checkpointFile), message.fingerprint(), state),
+					"Checkpoint", DispatcherSelector.fromConfig(CrackPasswords.IO_DISPATCHER));
+		} else if (wordsEnd > 0) {
+			pending.add(new Batch(0, new Shard(0, wordsEnd)));
+		}
+		// Resolve the users cracked by earlier runs, whatever the word list
+		if (cache != null) {
+			int resolved = 0;
+			for (Map.Entry<String, String> entry : message.cached().entrySet()) {
+				if (outstanding.remove(entry.getKey())) {
+					results.put(entry.getKey(), entry.getValue());
+					resolved++;
+				}
+			}
+			getContext().getLog().info("--> {} passwords resolved from the cache {} of {} credentials", resolved,
+					message.cache().path(), message.cache().size());
+		}
+		pending.forEach(batch -> pendingBytes += batch.shard().length());
+		if (outstanding.isEmpty() && !watch) {
+			getContext().getLog().info("--> All users cracked already");
+			finish();
+			return;
+		}
+		startMetrics();
+		if (watch) {
+			Duration interval = getContext().getSystem().settings().config().getDuration(CrackPasswords.WATCH_INTERVAL);
+			timers.startTimerWithFixedDelay(WATCH_TIMER, new WatchMessage(), interval);
+			getContext().getLog().info("--> Watching {} and {} every {} ms", hashedPasswords, fileName, interval.toMillis());
+		}
+		if (remoteWorkers) {
+			// The worker nodes find the coordinator through the receptionist, once it is ready
+			getContext().getSystem().receptionist().tell(Receptionist.register(COORDINATOR_KEY, getContext().getSelf()));
+			getContext().getLog().info("--> Coordinator ready, waiting for worker nodes");
+			return;
+		}
+
+		// Create the worker actors
+		for (int i = 0; i < nbActors; i++) {
+			ActorRef<PasswordsActor.Message> passwordsActor = getContext().spawn(
+					PasswordsActor.create("PasswordsActor" + i, getContext().getSelf()),
+					"PasswordsActor" + i,
+					DispatcherSelector.fromConfig(CrackPasswords.COMPUTE_DISPATCHER)
+			);
+
+			// Send the setup message to the actor
+			passwordsActor.tell(new PasswordsActor.SetupMessage(
+					getContext().getSelf(),
+					targets,
+					fileName,
+					kernel,
+					message.rules(),
+					metrics
+			));
+			// Users cracked by an earlier run or resolved from the cache are not searched again
+			results.keySet().forEach(user -> passwordsActor.tell(new PasswordsActor.UserCrackedMessage(user)));
+			workers.add(passwordsActor);
+			nbActorsCreated++; // Track created actors
+		}
+	}
+
+	// Publish the metrics over JMX and start the periodic progress report
+	private void startMetrics() {
+		metrics.start(wordsEnd, wordsEnd - pendingBytes);
+		metrics.setMailboxDepth(MeteredMailbox::depth);
 		try {
-			// Load the list of cleartext passwords
-			List<String> clearTextPasswords = readFile(message.cleartextPasswords());
-			int nbActors = message.nbActors;
-			int chunckSize = clearTextPasswords.size() / nbActors; // Divide the work evenly among actors
+			metrics.register(getContext().getSystem().name());
+		} catch (IllegalStateException e) {
+			getContext().getLog().warn("Metrics not available over JMX", e);
+		}
+		Duration interval = getContext().getSystem().settings().config().getDuration(CrackPasswords.PROGRESS_INTERVAL);
+		if (!interval.isZero()) {
+			timers.startTimerAtFixedRate(PROGRESS_TIMER, new ProgressMessage(), interval);
+		}
+	}
 
-			// Create the worker actors
-			for (int i = 0; i < nbActors; i++) {
-				int startLine = i * chunckSize;
-				int endLine = (i == nbActors - 1) ? clearTextPasswords.size() - 1 : (i + 1) * chunckSize - 1;
+	// Record a found password, tell the workers to stop searching this user, and finish once no user is left
+	private void handleFound(FoundMessage found) {
+		if (finished || !outstanding.remove(found.user())) {
+			return; // Already known, e.g. found by two actors in the same round
+		}
+		results.put(found.user(), found.password());
+		if (checkpoint != null) {
+			checkpoint.tell(new CheckpointActor.PasswordFoundMessage(found.user(), found.password()));
+		}
+		if (cache != null) {
+			CredentialCache cache = this.cache;
+			List<TargetIndex> targets = List.copyOf(generations);
+			// After the previous write, even if it failed: every write fails or succeeds on its own, and is reported
+			CompletableFuture<Void> write = cacheWrites.exceptionally(failure -> null).thenRunAsync(() -> {
+				try {
+					for (TargetIndex generation : targets) {
+						cache.putAll(generation, found.user(), found.password());
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, io);
+			cacheWrites = write;
+			getContext().pipeToSelf(write, (result, failure) -> new CacheWrittenMessage(found.user(), failure));
+		}
+		getContext().getLog().info("--> Password found for user {}: {} ({} users left)", found.user(), found.password(), outstanding.size());
+		if (watch) {
+			System.out.println(found.user() + " " + found.password()); // The results table is never printed
+		}
+		for (ActorRef<PasswordsActor.Message> worker : workers) {
+			worker.tell(new PasswordsActor.UserCrackedMessage(found.user()));
+		}
+		if (outstanding.isEmpty() && !watch) {
+			getContext().getLog().info("--> All users cracked. Total duration: {}", formatDuration());
+			finish();
+		}
+	}
 
-				ActorRef<PasswordsActor.Message> passwordsActor = getContext().spawn(
-						PasswordsActor.create("PasswordsActor" + i, getContext().getSelf()),
-						"PasswordsActor" + i
-				);
+	// Stop the workers still running, print the results, compact the checkpoint, close the cache and shut down the system
+	private void finish() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		timers.cancel(PROGRESS_TIMER);
+		timers.cancel(WATCH_TIMER);
+		for (ActorRef<PasswordsActor.Message> worker : workers) {
+			if (remoteWorkers) {
+				worker.tell(new PasswordsActor.NoMoreWorkMessage()); // Not a child: it stops by itself
+			} else {
+				getContext().stop(worker);
+			}
+		}
+		printResults();
+		closing = ((checkpoint != null) ? 1 : 0) + ((cache != null) ? 1 : 0);
+		if (closing == 0) {
+			sendFinishedMessage();
+			return;
+		}
+		if (checkpoint != null) {
+			checkpoint.tell(new CheckpointActor.CompleteMessage(getContext().getSelf())); // Answered by CheckpointCompletedMessage
+		}
+		if (cache != null) {
+			// Closed after the pending writes, even if one of them failed: it is reported by its CacheWrittenMessage
+			CredentialCache cache = this.cache;
+			CompletableFuture<Throwable> closed = cacheWrites.exceptionally(failure -> null)
+					.thenApplyAsync(result -> {
+						try {
+							cache.close();
+						} catch (IOException e) {
+							return e;
+						}
+						return null;
+					}, io);
+			getContext().pipeToSelf(closed, (failure, error) -> new CacheClosedMessage((error == null) ? failure : error));
+		}
+	}
 
-				// Send the setup message to the actor
-				passwordsActor.tell(new PasswordsActor.SetupMessage(
-						getContext().getSelf(),
-						message.hashedPasswords(),
-						message.cleartextPasswords(),
-						startLine,
-						endLine
-				));
-				nbActorsCreated++; // Track created actors
+	// Shut down the system once the checkpoint is compacted and the cache closed
+	private void closed() {
+		if (--closing == 0) {
+			sendFinishedMessage();
+		}
+	}
+
+	// Print the table of all found passwords
+	private void printResults() {
+		int width = "User".length();
+		for (String user : results.keySet()) {
+			width = Math.max(width, user.length());
+		}
+		String row = "%-" + width + "s  %s%n";
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("%n--> Found %d of %d passwords in %s%n", results.size(),
+				results.size() + outstanding.size(), formatDuration()));
+		table.append(String.format(row, "User", "Password"));
+		table.append("-".repeat(width)).append("  ").append("-".repeat("Password".length())).append(System.lineSeparator());
+		results.forEach((user, password) -> table.append(String.format(row, user, password)));
+		if (!outstanding.isEmpty()) {
+			table.append(String.format("--> Not cracked: %s%n", String.join(", ", outstanding)));
+		}
+		if (metrics.getBatches() > 0) {
+			table.append(String.format("--> Tested %d candidates with %d hashes (%.0f hashes/s)%n",
+					metrics.getCandidates(), metrics.getHashes(), metrics.getHashesPerSecond()));
+		}
+		System.out.println(table);
+	}
+
+	// Format the time elapsed since the InitMessage as hh:mm:ss.mmm
+	private String formatDuration() {
+		long durationNanos = System.nanoTime() - startTime; // Calculate total execution time
+		long durationMillis = durationNanos / 1_000_000;
+		long seconds = (durationMillis / 1_000) % 60;
+		long minutes = (durationMillis / (1_000 * 60)) % 60;
+		long hours = (durationMillis / (1_000 * 60 * 60)) % 24;
+		return String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds, durationMillis % 1_000);
+	}
+
+	// Hand out the next batch to the requesting worker, or tell it that the word list is exhausted
+	private void handOutWork(RequestWorkMessage request) {
+		// Asking for work means that the previous batch of this worker is done, unless reading it failed
+		Batch previous = inFlight.remove(request.worker());
+		if (previous != null && request.lastBatchFailed()) {
+			if (!retry(previous)) {
+				return;
+			}
+		} else if (previous != null) {
+			metrics.batchDone(previous.shard().length());
+			if (checkpoint != null) {
+				checkpoint.tell(new CheckpointActor.ShardDoneMessage(previous.shard()));
+			}
+		}
+		if (remoteWorkers && !workers.contains(request.worker())) {
+			workerJoined(request.worker());
+		}
+		if (!request.lastBatchFailed()) {
+			adaptBatchSize(request.lastBatchBytes(), request.lastBatchNanos());
+		}
+		if (pending.isEmpty()) {
+			if (watch) {
+				idle.add(request.worker()); // Until the next update of the files
+				return;
+			}
+			if (remoteWorkers && !inFlight.isEmpty()) {
+				idle.add(request.worker()); // The batch of a lost worker may still have to be handed out again
+				return;
+			}
+			if (remoteWorkers) {
+				getContext().getLog().info("--> Every batch is done. Total duration: {}", formatDuration());
+				finish(); // Tells every worker, idle or not, that there is no more work
+			} else {
+				request.worker().tell(new PasswordsActor.NoMoreWorkMessage());
 			}
-		} catch (Exception e) {
-			getContext().getLog().error("Error creating passwords actors", e);
-			return Behaviors.stopped();
+			return;
 		}
 
-		return Behaviors.same();
+		// Towards the end, hand out smaller batches so that all workers finish together
+		Batch batch = pending.pollFirst();
+		Shard range = batch.shard();
+		long shares = Math.max(1, workers.size());
+		long size = Math.max(MIN_BATCH_BYTES, Math.min(batchBytes, pendingBytes / (2L * shares)));
+		if (range.start() < rankedEnd) {
+			// In the ranked head, batches grow with the distance into it, so that all workers sweep the likeliest candidates first
+			size = Math.max(MIN_BATCH_BYTES, Math.min(size, range.start() / shares));
+		}
+		long end = range.end();
+		if (range.length() > size) {
+			try {
+				end = Math.min(range.end(), clearTextPasswords.alignForward(range.start() + size));
+			} catch (IOException e) {
+				getContext().getLog().error("Error reading {}, handing out the rest of the range at once", clearTextPasswords.name(), e);
+			}
+		}
+		if (end < range.end()) {
+			pending.addFirst(new Batch(batch.generation(), new Shard(end, range.end())));
+		}
+		Shard shard = new Shard(range.start(), end);
+		pendingBytes -= shard.length();
+		inFlight.put(request.worker(), new Batch(batch.generation(), shard));
+		request.worker().tell(new PasswordsActor.WorkMessage(batch.generation(), shard));
 	}
 
-	// Send a finished message to shut down the system
-	public void sendFinishedMessage() {
-		this.getContext().getLog().info("--> All actors have finished. Sending FinishedMessage to CrackPasswords...");
-		getContext().getSystem().terminate(); // Terminate the system
-		System.out.println("--> Crack Passwords Actor System terminated.\n");
+	// A batch could not be read: hand it out again first, or end the run once it failed too often; false if ended
+	private boolean retry(Batch failed) {
+		int failures = retries.merge(new BatchStart(failed.generation(), failed.shard().start()), 1, Integer::sum);
+		if (failures > MAX_BATCH_RETRIES) {
+			getContext().getLog().error("--> Giving up after {} failed reads of positions {} to {} of {}, the run ends without them",
+					failures, failed.shard().start(), failed.shard().end(), clearTextPasswords.name());
+			finish(); // The batch is not recorded as done: a resumed run tries it again
+			return false;
+		}
+		getContext().getLog().warn("--> Reading positions {} to {} failed, handing them out again ({}/{})",
+				failed.shard().start(), failed.shard().end(), failures, MAX_BATCH_RETRIES);
+		pending.addFirst(failed);
+		pendingBytes += failed.shard().length();
+		return true;
+	}
+
+	// A PasswordsActor of a worker node asks for work for the first time: watch it, and tell it the cracked users
+	private void workerJoined(ActorRef<PasswordsActor.Message> worker) {
+		getContext().watch(worker);
+		workers.add(worker);
+		nbActorsCreated++;
+		getContext().getLog().info("--> Worker joined: {} ({} workers)", worker.path(), workers.size());
+		results.keySet().forEach(user -> worker.tell(new PasswordsActor.UserCrackedMessage(user)));
+	}
+
+	// A remote worker stopped or its node left the cluster: hand out its batch again, to an idle worker if any
+	private void workerLost(Terminated terminated) {
+		workers.remove(terminated.getRef());
+		idle.remove(terminated.getRef());
+		Batch lost = inFlight.remove(terminated.getRef());
+		if (lost == null || finished) {
+			return;
+		}
+		getContext().getLog().warn("--> Worker lost: {}, handing out bytes {} to {} again", terminated.getRef().path(),
+				lost.shard().start(), lost.shard().end());
+		pending.addFirst(lost);
+		pendingBytes += lost.shard().length();
+		while (!idle.isEmpty() && !pending.isEmpty()) {
+			handOutWork(new RequestWorkMessage(idle.poll(), 0, 0, false));
+		}
+	}
+
+	// Move the batch size towards the size that would have taken TARGET_BATCH_NANOS
+	private void adaptBatchSize(long lastBatchBytes, long lastBatchNanos) {
+		if (lastBatchBytes <= 0 || lastBatchNanos <= 0) {
+			return;
+		}
+		double bytesPerNano = (double) lastBatchBytes / lastBatchNanos;
+		long ideal = (long) (bytesPerNano * TARGET_BATCH_NANOS);
+		// Average with the current size to smooth out noisy measurements
+		batchBytes = Math.max(MIN_BATCH_BYTES, Math.min(MAX_BATCH_BYTES, (batchBytes + ideal) / 2));
 	}
 
-	// Helper method to read file contents into a list of strings
-	private List<String> readFile(String fileName) throws IOException {
-		List<String> lines = new LinkedList<>();
-		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-			String line = br.readLine();
-			while (line != null) {
-				lines.add(line);
-				line = br.readLine(); // Read the next line
+	// Watch mode: read the lines appended to both files on the I/O dispatcher, unless the previous poll is still running
+	private void poll() {
+		if (polling || finished) {
+			return;
+		}
+		polling = true;
+		String hashedFile = hashedPasswords;
+		long hashedFrom = hashedEnd;
+		HashScheme scheme = hashedScheme;
+		CandidateSource words = clearTextPasswords;
+		long wordsFrom = wordsEnd;
+		CredentialCache cache = this.cache;
+		CompletableFuture<DeltaMessage> delta = CompletableFuture.supplyAsync(() -> {
+			try {
+				List<String> malformed = new ArrayList<>();
+				TargetIndex.Tail hashed = TargetIndex.tail(hashedFile, hashedFrom, scheme, malformed::add);
+				Map<String, String> cached = (cache == null || hashed.targets().size() == 0) ? Map.of() : cache.resolve(hashed.targets());
+				// A mask never grows, only a text word list is read again
+				if (!(words instanceof MappedWordlist)) {
+					return new DeltaMessage(hashed, malformed, words, wordsFrom, cached, null);
+				}
+				MappedWordlist text = MappedWordlist.open(words.name());
+				return new DeltaMessage(hashed, malformed, text, text.completeEnd(wordsFrom), cached, null);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
+		}, io);
+		getContext().pipeToSelf(delta, (result, failure) -> (failure == null) ? result : new DeltaMessage(null, null, null, 0, null, failure));
+	}
+
+	// Watch mode: hand out the appended words for the users not cracked yet, then the whole word list for the appended users
+	private void handleDelta(DeltaMessage delta) {
+		polling = false;
+		if (finished) {
+			return;
+		}
+		if (delta.failure() != null) {
+			getContext().getLog().warn("Error reading the watched files, retrying at the next poll", delta.failure());
+			return;
 		}
-		return lines;
+		for (String line : delta.malformed()) {
+			getContext().getLog().error("Malformed line in hashed passwords file: {}", line);
+		}
+		hashedEnd = delta.hashed().end();
+		hashedScheme = delta.hashed().scheme();
+
+		if (delta.wordsEnd() > wordsEnd) {
+			clearTextPasswords = delta.clearTextPasswords();
+			Shard words = new Shard(wordsEnd, delta.wordsEnd());
+			int searched = 0;
+			for (int generation = 0; generation < generations.size(); generation++) {
+				if (hasOutstanding(generations.get(generation))) {
+					schedule(new Batch(generation, words));
+					searched++;
+				}
+			}
+			wordsEnd = delta.wordsEnd();
+			getContext().getLog().info("--> {} bytes appended to {}, searched for {} users", words.length(),
+					clearTextPasswords.name(), outstanding.size());
+			if (searched == 0) {
+				metrics.addTotalBytes(words.length()); // Nothing to search, but part of the word list all the same
+				metrics.batchDone(words.length());
+			}
+		}
+
+		TargetIndex added = delta.hashed().targets();
+		if (added.size() > 0) {
+			int generation = generations.size();
+			generations.add(added);
+			for (ActorRef<PasswordsActor.Message> worker : workers) {
+				worker.tell(new PasswordsActor.TargetsMessage(generation, added));
+			}
+			int resolved = 0;
+			for (String user : added.users()) {
+				String password = delta.cached().get(user);
+				if (password == null) {
+					outstanding.add(user); // Searched again if cracked before, e.g. after a password change
+				} else {
+					outstanding.remove(user);
+					results.put(user, password);
+					resolved++;
+					System.out.println(user + " " + password);
+					for (ActorRef<PasswordsActor.Message> worker : workers) {
+						worker.tell(new PasswordsActor.UserCrackedMessage(user));
+					}
+				}
+			}
+			getContext().getLog().info("--> {} users appended to {}, {} resolved from the cache", added.size(),
+					hashedPasswords, resolved);
+			if (wordsEnd > 0 && hasOutstanding(added)) {
+				schedule(new Batch(generation, new Shard(0, wordsEnd)));
+			}
+		}
+	}
+
+	// True if a user of the generation is not cracked yet
+	private boolean hasOutstanding(TargetIndex generation) {
+		for (String user : generation.users()) {
+			if (outstanding.contains(user)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Queue a batch of an update, and hand it out at once to the workers waiting for work
+	private void schedule(Batch batch) {
+		pending.addLast(batch);
+		pendingBytes += batch.shard().length();
+		metrics.addTotalBytes(batch.shard().length());
+		while (!idle.isEmpty() && !pending.isEmpty()) {
+			handOutWork(new RequestWorkMessage(idle.poll(), 0, 0, false));
+		}
+	}
+
+	// Send a finished message to shut down the system
+	public void sendFinishedMessage() {
+		this.getContext().getLog().info("--> Work done. Sending FinishedMessage to CrackPasswords...");
+		metrics.unregister();
+		getContext().getSystem().terminate(); // Terminate the system
+		System.out.println("--> Crack Passwords Actor System terminated.\n");
 	}
 }
\ No newline at end of file
@@ -8,60 +8,83 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
 import java.util.LinkedList;
 import java.util.List;
 
+import ch.bfh.akka.crack.common.BinaryWordlist;
+import ch.bfh.akka.crack.common.CandidateSink;
+import ch.bfh.akka.crack.common.CandidateSource;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.HashKernel;
+import ch.bfh.akka.crack.common.MaskKeyspace;
+import ch.bfh.akka.crack.common.Options;
+import ch.bfh.akka.crack.common.RuleSet;
+import ch.bfh.akka.crack.common.Shard;
+import ch.bfh.akka.crack.common.TargetIndex;
+
 /**
  * A class for a pure sequential solution for cracking passwords.
  */
 public class CrackPasswords {
 
+    // Entries of a binary word list, or candidates of a mask, between two checks for users left
+    private static final long IN_PLACE_SHARD = 1 << 20;
+
     /**
      * Return a string representing the hash of the given <code>textToHash</code>, using
      * the algorithm <code>algorithm</code>. The hash is returned encoded in Base64
-     * using UTF-8.
+     * using UTF-8. Kept for compatibility, the main loop uses the allocation-free
+     * {@link HashKernel}.
      *
      * @param algorithm  for the hashing of the string
      * @param textToHash the text that is to be hashed
      * @return the base64 encoding of the hash code
      */
     public static String hash(String algorithm, String textToHash) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance(algorithm);
-        byte[] byteOfTextToHash = textToHash.getBytes(StandardCharsets.UTF_8);
-        byte[] hashedByteArray = digest.digest(byteOfTextToHash);
-        return Base64.getEncoder().encodeToString(hashedByteArray);
+        return HashKernel.hash(algorithm, textToHash);
     }
 
     /**
      * Entry point of the program. Start a sequential Java program for cracking passwords.
      *
      * @param args arg[0] = file name of hashed passwords and arg[1] = file name of cleartext passwords
+     *             or a mask (<code>mask:?u?l?l?l?d?d</code>),
+     *             followed by the optional <code>--kernel=scalar|vector</code> and <code>--rules=file</code>
      */
     public static void main(String[] args) {
         long start = System.currentTimeMillis();
 
         System.out.println("Reads a file containing hash of passwords");
 
-        if (args.length != 2) {
+        Options options = Options.parse(args);
+        if (options.positional().size() != 2) {
             System.err.println("Program requires two file names as argument (hashed passwords and possible passwords)");
             return;
         }
 
-        // We read the first file containing the hashed passwords
-        List<String> lines = new LinkedList<>();
-        String fileName = args[0];
+        Cracker.Kernel kernel;
+        try {
+            kernel = Cracker.Kernel.of(options.get("kernel", "scalar"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown kernel " + options.get("kernel", "") + ", expected scalar or vector");
+            return;
+        }
+        String unavailable = kernel.unavailableReason();
+        if (unavailable != null) {
+            System.err.println("Vector kernel not available (" + unavailable + "), using the scalar kernel");
+            kernel = Cracker.Kernel.SCALAR;
+        }
+
+        // We read the first file containing the hashed passwords and group it by salt
+        TargetIndex targets;
+        String fileName = options.positional().get(0);
         System.out.println("Reading file: " + fileName);
 
-        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-            String line = br.readLine();
-            while (line != null) {
-                //System.out.println("line = "+line);
-                lines.addLast(line);
-                line = br.readLine();
-            }
+        try {
+            targets = TargetIndex.load(fileName, line -> System.err.println("Malformed file" + fileName + ": " + line));
         } catch (FileNotFoundException e1) {
             System.err.println("File " + fileName + " not found");
             return;
@@ -70,12 +93,39 @@ public class CrackPasswords {
             return;
         }
 
-        // We read the second file containing the clear text passwords
+        // We read the optional mangling rules, applied to every clear text password
+        RuleSet rules = null;
+        String fileNameRules = options.get("rules", "");
+        if (!fileNameRules.isEmpty()) {
+            System.out.println("Reading file: " + fileNameRules);
+            try {
+                rules = RuleSet.load(Path.of(fileNameRules));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Problem reading the file " + fileNameRules + ": " + e.getMessage());
+                return;
+            }
+        }
+
+        // We read the second file containing the clear text passwords,
+        // unless it is a binary word list or a mask, which are iterated in place
         List<String> passwords = new LinkedList<>();
-        String fileNamePasswords = args[1];
+        String fileNamePasswords = options.positional().get(1);
         System.out.println("Reading file: " + fileNamePasswords);
 
-        try (BufferedReader br = new BufferedReader(new FileReader(fileNamePasswords))) {
+        CandidateSource inPlace = null;
+        try {
+            if (fileNamePasswords.startsWith(MaskKeyspace.PREFIX) || BinaryWordlist.isBinary(Path.of(fileNamePasswords))) {
+                inPlace = CandidateSource.open(fileNamePasswords);
+            }
+        } catch (NoSuchFileException e1) {
+            System.err.println("File " + fileNamePasswords + " not found");
+            return;
+        } catch (IOException e2) {
+            System.err.println("Problem reading the file " + fileNamePasswords + ": " + e2.getMessage());
+            return;
+        }
+
+        if (inPlace == null) try (BufferedReader br = new BufferedReader(new FileReader(fileNamePasswords))) {
             String pwd1 = br.readLine();
             while (pwd1 != null) {
                 passwords.addLast(pwd1);
@@ -89,30 +139,47 @@ public class CrackPasswords {
             return;
         }
 
-        // For each user and for each password, we check if the
-        // password corresponds to the user :
+        Cracker cracker;
+        try {
+            cracker = new Cracker(targets, (user, candidate, offset, length) ->
+                    System.out.println(user + " " + Cracker.password(candidate, offset, length)), kernel);
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Algorithm SHA 512 not available");
+            return;
+        }
+
+        // For each password, we hash it once per distinct salt and check if
+        // it corresponds to a user of that salt :
         // hash(password + salt) is equal to the hashed password.
-        for (String lineFile : lines) {
-            String[] splitLine = lineFile.split(" ");
-            if (splitLine.length != 3) {
-                System.err.println("Malformed file" + fileName);
-            }
-            String user = splitLine[0];
-            String hashedPassword = splitLine[2];
-            String salt = splitLine[1];
-
-            for (String pwd : passwords) {
-                try {
-                    String hashedPwd = hash("SHA-512", pwd + salt);
-                    if (hashedPwd.equals(hashedPassword)) {
-                        System.out.println(user + " " + pwd);
-                    }
-                } catch (NoSuchAlgorithmException e) {
-                    System.err.println("Algorithm SHA 512 not available");
-                    return;
+        // With rules, every password is expanded into one candidate per rule first.
+        CandidateSink mangled = (rules == null) ? null : rules.mangle(cracker);
+        if (inPlace != null) {
+            try {
+                // Shard by shard, so that the loop ends once every user is cracked, like the text loop
+                CandidateSink sink = (mangled == null) ? cracker : mangled;
+                long position = 0;
+                while (position < inPlace.size() && cracker.remaining() > 0) {
+                    long end = inPlace.alignForward(Math.min(inPlace.size(), position + IN_PLACE_SHARD));
+                    inPlace.forEach(new Shard(position, end), sink);
+                    position = end;
                 }
+            } catch (IOException e) {
+                System.err.println("Problem reading the file " + fileNamePasswords);
+                return;
+            }
+        }
+        for (String pwd : passwords) {
+            if (mangled == null) {
+                cracker.accept(pwd);
+            } else {
+                byte[] bytes = pwd.getBytes(StandardCharsets.UTF_8);
+                mangled.accept(bytes, 0, bytes.length);
+            }
+            if (cracker.remaining() == 0) {
+                break; // Every user is cracked
             }
         }
+        cracker.flush(); // The vector kernel may still hold the last candidates
 
         long finish = System.currentTimeMillis();
         long timeElapsed = finish - start;
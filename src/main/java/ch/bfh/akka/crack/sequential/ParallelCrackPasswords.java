@@ -0,0 +1,256 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ */
+package ch.bfh.akka.crack.sequential;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ch.bfh.akka.crack.common.CandidateSink;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.MaskKeyspace;
+import ch.bfh.akka.crack.common.Options;
+import ch.bfh.akka.crack.common.PackedWordlist;
+import ch.bfh.akka.crack.common.RuleSet;
+import ch.bfh.akka.crack.common.TargetIndex;
+
+/**
+ * A multicore solution for cracking passwords without Akka, on a {@link ForkJoinPool}.
+ * <p>
+ * The word list is read into a {@link PackedWordlist}, so that it can be split by line
+ * number in constant time. A {@link CrackTask} splits its range of lines in halves until
+ * it is small enough, cracks it, and returns the passwords it found; the lists of the
+ * subtasks are concatenated on the way back, in word list order.
+ * <p>
+ * Every pool thread keeps its own {@link Cracker}. The users cracked by any thread are
+ * retired by the others at the start of their next range, and the remaining ranges are
+ * skipped once every user is cracked.
+ */
+public class ParallelCrackPasswords {
+
+    // Ranges are split until they are this many times smaller than the share of one thread
+    private static final int RANGES_PER_THREAD = 16;
+    private static final int MIN_RANGE = 1_000;
+
+    /**
+     * A password found by a task.
+     *
+     * @param user     the cracked user
+     * @param password the password
+     */
+    public record Found(String user, String password) {}
+
+    /**
+     * The state shared by the tasks of one run.
+     */
+    private static final class Job {
+        private final TargetIndex targets;
+        private final PackedWordlist passwords;
+        private final RuleSet rules; // Null for none
+        private final Cracker.Kernel kernel;
+        private final int threshold; // Ranges of at most this many lines are not split anymore
+        private final long users; // Number of distinct users to crack
+        private final Map<String, String> cracked = new ConcurrentHashMap<>(); // By any thread, to retire
+        private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(this::newWorker);
+
+        private Job(TargetIndex targets, PackedWordlist passwords, RuleSet rules, Cracker.Kernel kernel, int threshold) {
+            this.targets = targets;
+            this.passwords = passwords;
+            this.rules = rules;
+            this.kernel = kernel;
+            this.threshold = threshold;
+            this.users = targets.users().stream().distinct().count();
+        }
+
+        private Worker newWorker() {
+            try {
+                return new Worker(this);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Algorithm SHA 512 not available", e);
+            }
+        }
+    }
+
+    /**
+     * The cracker of one pool thread, and the passwords found in the range it is cracking.
+     */
+    private static final class Worker {
+        private final Cracker cracker;
+        private final CandidateSink candidates; // The cracker, behind the mangling rules if any
+        private List<Found> found = new ArrayList<>();
+
+        private Worker(Job job) throws NoSuchAlgorithmException {
+            this.cracker = new Cracker(job.targets, (user, candidate, offset, length) -> {
+                String password = Cracker.password(candidate, offset, length);
+                found.add(new Found(user, password));
+                job.cracked.putIfAbsent(user, password);
+            }, job.kernel);
+            this.candidates = (job.rules == null) ? cracker : job.rules.mangle(cracker);
+        }
+    }
+
+    /**
+     * Cracks the lines <code>[from, to)</code> of the word list.
+     */
+    @SuppressWarnings("serial") // Serializable as every ForkJoinTask, but never serialized
+    private static final class CrackTask extends RecursiveTask<List<Found>> {
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        private CrackTask(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Found> compute() {
+            if (job.cracked.size() == job.users) {
+                return List.of(); // Every user is cracked
+            }
+            if (to - from > job.threshold) {
+                int middle = (from + to) >>> 1;
+                CrackTask left = new CrackTask(job, from, middle);
+                left.fork();
+                List<Found> right = new CrackTask(job, middle, to).compute();
+                List<Found> found = new ArrayList<>(left.join());
+                found.addAll(right);
+                return found;
+            }
+            Worker worker = job.workers.get();
+            job.cracked.keySet().forEach(worker.cracker::retire); // Cracked by other threads meanwhile
+            job.passwords.forEach(from, to, worker.candidates);
+            worker.candidates.flush(); // The vector kernel may still hold the last candidates
+            List<Found> found = worker.found;
+            worker.found = new ArrayList<>();
+            return found;
+        }
+    }
+
+    /**
+     * Cracks a word list on a fork/join pool.
+     *
+     * @param targets   the target index
+     * @param passwords the word list
+     * @param rules     the mangling rules, null for none
+     * @param kernel    the SHA-512 kernel
+     * @param pool      the pool to run on
+     * @return the passwords found by user, in word list order
+     */
+    public static Map<String, String> crack(TargetIndex targets, PackedWordlist passwords, RuleSet rules,
+                                            Cracker.Kernel kernel, ForkJoinPool pool) {
+        int threshold = Math.max(MIN_RANGE, passwords.size() / (pool.getParallelism() * RANGES_PER_THREAD));
+        Job job = new Job(targets, passwords, rules, kernel, threshold);
+        Map<String, String> results = new LinkedHashMap<>();
+        for (Found found : pool.invoke(new CrackTask(job, 0, passwords.size()))) {
+            results.putIfAbsent(found.user(), found.password()); // Found twice if two threads raced
+        }
+        return results;
+    }
+
+    /**
+     * Entry point of the program. Start a multicore Java program for cracking passwords.
+     *
+     * @param args arg[0] = file name of hashed passwords and arg[1] = file name of cleartext passwords,
+     *             followed by the optional <code>--threads=N</code>, <code>--kernel=scalar|vector</code>
+     *             and <code>--rules=file</code>
+     */
+    public static void main(String[] args) {
+        long start = System.currentTimeMillis();
+
+        Options options = Options.parse(args);
+        if (options.positional().size() != 2) {
+            System.err.println("Program requires two file names as argument (hashed passwords and possible passwords)");
+            return;
+        }
+
+        int threads;
+        Cracker.Kernel kernel;
+        try {
+            threads = options.getInt("threads", 0);
+            threads = (threads <= 0) ? Runtime.getRuntime().availableProcessors() : threads;
+            kernel = Cracker.Kernel.of(options.get("kernel", "scalar"));
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException
+            System.err.println("Usage: fileNameHashedPasswords fileNameCleartextPasswords [--threads=N] "
+                    + "[--kernel=scalar|vector] [--rules=file]");
+            return;
+        }
+        String unavailable = kernel.unavailableReason();
+        if (unavailable != null) {
+            System.err.println("Vector kernel not available (" + unavailable + "), using the scalar kernel");
+            kernel = Cracker.Kernel.SCALAR;
+        }
+
+        // We read the first file containing the hashed passwords and group it by salt
+        TargetIndex targets;
+        String fileName = options.positional().get(0);
+        System.out.println("Reading file: " + fileName);
+        try {
+            targets = TargetIndex.load(fileName, line -> System.err.println("Malformed file" + fileName + ": " + line));
+        } catch (FileNotFoundException e1) {
+            System.err.println("File " + fileName + " not found");
+            return;
+        } catch (IOException e2) {
+            System.err.println("Problem reading the file " + fileName);
+            return;
+        }
+
+        // We read the optional mangling rules, applied to every clear text password
+        RuleSet rules = null;
+        String fileNameRules = options.get("rules", "");
+        if (!fileNameRules.isEmpty()) {
+            System.out.println("Reading file: " + fileNameRules);
+            try {
+                rules = RuleSet.load(Path.of(fileNameRules));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Problem reading the file " + fileNameRules + ": " + e.getMessage());
+                return;
+            }
+        }
+
+        // We read the second file containing the clear text passwords, as one array
+        PackedWordlist passwords;
+        String fileNamePasswords = options.positional().get(1);
+        if (fileNamePasswords.startsWith(MaskKeyspace.PREFIX)) {
+            System.err.println("The fork/join version reads word lists only, not masks: " + fileNamePasswords);
+            return;
+        }
+        System.out.println("Reading file: " + fileNamePasswords);
+        try {
+            passwords = PackedWordlist.load(Path.of(fileNamePasswords));
+        } catch (NoSuchFileException e1) {
+            System.err.println("File " + fileNamePasswords + " not found");
+            return;
+        } catch (IOException e2) {
+            System.err.println("Problem reading the file " + fileNamePasswords + ": " + e2.getMessage());
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            crack(targets, passwords, rules, kernel, pool).forEach((user, password) -> System.out.println(user + " " + password));
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return;
+        } finally {
+            pool.shutdown();
+        }
+
+        long finish = System.currentTimeMillis();
+        long timeElapsed = finish - start;
+        long seconds = timeElapsed / 1000;
+        long millis = timeElapsed % 1000;
+        System.err.println("Process duration = " + seconds + "." + millis + " secs on " + threads + " threads");
+    }
+}
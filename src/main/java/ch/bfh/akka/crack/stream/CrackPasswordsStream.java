@@ -0,0 +1,231 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.stream;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.stream.javadsl.FileIO;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.Sink;
+import akka.util.ByteString;
+import ch.bfh.akka.crack.common.BinaryWordlist;
+import ch.bfh.akka.crack.common.Cracker;
+import ch.bfh.akka.crack.common.MaskKeyspace;
+import ch.bfh.akka.crack.common.Options;
+import ch.bfh.akka.crack.common.TargetIndex;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Main class for the Akka Streams password cracker.
+ * <p>
+ * The word list is never materialized: it flows through a pipeline
+ * <pre>
+ *   read (framed lines) -&gt; batch -&gt; hash (parallel, unordered) -&gt; match -&gt; write results
+ * </pre>
+ * and backpressure keeps the reader from outrunning the hashers, so at most
+ * <code>parallelism</code> batches of lines are in memory at any time, whatever
+ * the size of the word list. The stream stops as soon as every user is cracked.
+ */
+public class CrackPasswordsStream {
+
+	// Dispatcher declared in application.conf, running the hashing tasks
+	private static final String COMPUTE_DISPATCHER = "crack.compute-dispatcher";
+
+	private static final int CHUNK_SIZE = 64 * 1024; // Bytes read from the file at once
+	private static final int MAX_LINE_LENGTH = 1024; // Longer lines fail the stream
+	private static final int BATCH_SIZE = 4096; // Lines hashed by one task
+
+	/**
+	 * A password found by the pipeline.
+	 *
+	 * @param user     the cracked user
+	 * @param password the password
+	 */
+	public record Found(String user, String password) {}
+
+	/**
+	 * Entry point of the program. Start an actor system and run the pipeline in it.
+	 *
+	 * @param args arg[0] = file name of hashed passwords, arg[1] = file name of cleartext passwords,
+	 *             followed by the optional <code>--compute-threads=N</code> and <code>--output=file</code>
+	 */
+	public static void main(String[] args) {
+		Options options = Options.parse(args);
+		if (options.positional().size() != 2) {
+			usage();
+			return;
+		}
+		int parallelism;
+		try {
+			parallelism = options.getInt("compute-threads", 0);
+		} catch (NumberFormatException e) {
+			usage();
+			return;
+		}
+		parallelism = (parallelism <= 0) ? Runtime.getRuntime().availableProcessors() : parallelism;
+		String hashedPasswords = options.positional().get(0);
+		if (options.positional().get(1).startsWith(MaskKeyspace.PREFIX)) {
+			System.err.println("The stream version reads word lists only, not masks: " + options.positional().get(1));
+			return;
+		}
+		Path cleartextPasswords = Path.of(options.positional().get(1));
+		long start = System.nanoTime();
+
+		// The target index is small: it is read up front, the word list is streamed
+		TargetIndex targets;
+		try {
+			targets = TargetIndex.load(hashedPasswords, line -> System.err.println("Malformed line in hashed passwords file: " + line));
+			// The stream frames the word list by lines: it only reads the text format
+			if (BinaryWordlist.isBinary(cleartextPasswords)) {
+				System.err.println("The stream version reads text word lists only, not " + cleartextPasswords);
+				return;
+			}
+		} catch (IOException e) {
+			System.err.println("Problem reading the file " + hashedPasswords + " or " + cleartextPasswords);
+			return;
+		}
+		Set<String> outstanding = ConcurrentHashMap.newKeySet();
+		outstanding.addAll(targets.users());
+		if (outstanding.isEmpty()) {
+			System.out.println("--> No user to crack");
+			return;
+		}
+
+		Config config = ConfigFactory.parseMap(Map.of(
+				COMPUTE_DISPATCHER + ".thread-pool-executor.fixed-pool-size", parallelism
+		)).withFallback(ConfigFactory.load());
+		ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "CrackPasswordsStream", config);
+		Executor compute = system.dispatchers().lookup(DispatcherSelector.fromConfig(COMPUTE_DISPATCHER));
+		System.out.println("--> Crack Passwords Stream started with " + parallelism + " hashing stages");
+
+		BatchHasher hasher = new BatchHasher(targets);
+		List<Found> results = new ArrayList<>();
+		Sink<ByteString, ? extends CompletionStage<?>> sink = options.has("output")
+				? FileIO.toPath(Path.of(options.get("output", "")))
+				: Sink.ignore();
+
+		CompletionStage<?> done = FileIO.fromPath(cleartextPasswords, CHUNK_SIZE)
+				// Read: one element per line, the last line may lack its newline
+				.via(Framing.delimiter(ByteString.fromString("\n"), MAX_LINE_LENGTH, FramingTruncation.ALLOW))
+				.grouped(BATCH_SIZE)
+				// Hash: one batch per task on the compute dispatcher, at most parallelism batches in flight
+				.mapAsyncUnordered(parallelism, batch -> CompletableFuture.supplyAsync(() -> hasher.crack(batch), compute))
+				.mapConcat(found -> found)
+				// Match: keep the first password of every user, and stop searching it
+				.filter(found -> outstanding.remove(found.user()))
+				.map(found -> {
+					hasher.retire(found.user());
+					results.add(found);
+					System.out.println("--> Password found for user " + found.user() + ": " + found.password());
+					return found;
+				})
+				// Complete the stream, cancelling the file reading, once no user is left
+				.takeWhile(found -> !outstanding.isEmpty(), true)
+				// Write
+				.map(found -> ByteString.fromString(found.user() + " " + found.password() + "\n"))
+				.runWith(sink, system);
+
+		done.whenComplete((result, failure) -> {
+			if (failure != null) {
+				System.err.println("Stream failed: " + failure);
+			}
+			long durationMillis = (System.nanoTime() - start) / 1_000_000;
+			System.out.println("--> Found " + results.size() + " of " + (results.size() + outstanding.size())
+					+ " passwords in " + durationMillis / 1000 + "." + String.format("%03d", durationMillis % 1000) + " secs");
+			system.terminate();
+		});
+	}
+
+	// Helper method to print usage instructions if the user inputs incorrect arguments
+	private static void usage() {
+		System.err.println("""
+                Usage: program-name fileNameHashedPasswords fileNameCleartextPasswords [options]
+                Options:
+                    --compute-threads=N  parallel hashing stages (default: available processors)
+                    --output=file        also write the found passwords to this file
+                """);
+	}
+
+	/**
+	 * The hashing stage. Every thread of the compute dispatcher gets its own {@link Cracker}
+	 * and candidate buffer. Users cracked meanwhile are retired from a thread's cracker
+	 * before it starts its next batch.
+	 */
+	private static final class BatchHasher {
+
+		private final TargetIndex targets;
+		private final List<String> crackedUsers = new CopyOnWriteArrayList<>();
+		private final ThreadLocal<Worker> workers;
+
+		private BatchHasher(TargetIndex targets) {
+			this.targets = targets;
+			this.workers = ThreadLocal.withInitial(this::newWorker);
+		}
+
+		// Called by the match stage
+		private void retire(String user) {
+			crackedUsers.add(user);
+		}
+
+		// Called by the hashing tasks, concurrently
+		private List<Found> crack(List<ByteString> batch) {
+			Worker worker = workers.get();
+			while (worker.retired < crackedUsers.size()) {
+				worker.cracker.retire(crackedUsers.get(worker.retired++));
+			}
+			worker.found = new ArrayList<>();
+			for (ByteString line : batch) {
+				int length = line.length();
+				if (worker.buffer.capacity() < length) {
+					worker.buffer = ByteBuffer.allocate(Math.max(length, worker.buffer.capacity() * 2));
+				}
+				worker.buffer.clear();
+				line.copyToBuffer(worker.buffer);
+				byte[] candidate = worker.buffer.array();
+				if (length > 0 && candidate[length - 1] == '\r') {
+					length--;
+				}
+				worker.cracker.accept(candidate, 0, length);
+			}
+			return worker.found;
+		}
+
+		private Worker newWorker() {
+			Worker worker = new Worker();
+			try {
+				worker.cracker = new Cracker(targets, (user, candidate, offset, length) ->
+						worker.found.add(new Found(user, Cracker.password(candidate, offset, length))));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("Algorithm SHA 512 not available", e);
+			}
+			return worker;
+		}
+
+		// The per-thread state of the hashing stage
+		private static final class Worker {
+			private Cracker cracker;
+			private ByteBuffer buffer = ByteBuffer.allocate(256);
+			private List<Found> found = new ArrayList<>();
+			private int retired = 0;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryWordlistTest {
+
+	private static final List<String> WORDS = List.of("password", "123456", "grüezi", "a", "", "letmein", "qwerty", "zz", "hunter2");
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void convertKeepsTheLinesInTheOrderOfTheTextFile() throws IOException {
+		Path text = write(WORDS);
+		Path binary = directory.resolve("words.bin");
+		BinaryWordlist wordlist = BinaryWordlist.convert(text, binary, false);
+		assertTrue(BinaryWordlist.isBinary(binary));
+		assertFalse(BinaryWordlist.isBinary(text));
+		assertEquals(WORDS.size(), wordlist.count());
+		assertEquals(WORDS.size(), wordlist.size());
+		assertFalse(wordlist.byLength());
+		assertEquals(0, wordlist.rankedCount());
+		assertEquals(WORDS, read(wordlist, wordlist.all()));
+		assertEquals(WORDS, read(BinaryWordlist.open(binary), wordlist.all()));
+		assertTrue(CandidateSource.open(binary.toString()) instanceof BinaryWordlist);
+	}
+
+	@Test
+	void convertGroupsTheLinesByLength() throws IOException {
+		BinaryWordlist wordlist = BinaryWordlist.convert(write(WORDS), directory.resolve("words.bin"), true);
+		assertTrue(wordlist.byLength());
+		// Shortest first, in the order of the text file within a length
+		assertEquals(List.of("", "a", "zz", "123456", "qwerty", "grüezi", "letmein", "hunter2", "password"),
+				read(wordlist, wordlist.all()));
+	}
+
+	@Test
+	void convertPutsTheCountedLinesFirst() throws IOException {
+		Path frequencies = directory.resolve("frequencies.txt");
+		Files.write(frequencies, List.of("   3 qwerty", "  10 123456", "   3 a", "   7 not in the list"));
+		BinaryWordlist wordlist = BinaryWordlist.convert(write(WORDS), directory.resolve("words.bin"), false, frequencies);
+		assertTrue(wordlist.byFrequency());
+		assertEquals(3, wordlist.rankedCount());
+		// Most frequent first, ties in the order of the text file, then the other lines
+		assertEquals(List.of("123456", "a", "qwerty", "password", "grüezi", "", "letmein", "zz", "hunter2"),
+				read(wordlist, wordlist.all()));
+	}
+
+	@Test
+	void shardsAreRangesOfEntryNumbers() throws IOException {
+		BinaryWordlist wordlist = BinaryWordlist.convert(write(WORDS), directory.resolve("words.bin"), false);
+		long count = wordlist.count();
+		assertEquals(0, wordlist.alignForward(-5));
+		assertEquals(4, wordlist.alignForward(4));
+		assertEquals(count, wordlist.alignForward(count + 5));
+		for (int start = 0; start <= count; start++) {
+			for (int end = start; end <= count; end++) {
+				assertEquals(WORDS.subList(start, end), read(wordlist, new Shard(start, end)), "shard " + start + ".." + end);
+			}
+		}
+		// Consecutive shards cover every entry exactly once
+		List<String> all = new ArrayList<>();
+		for (long start = 0; start < count; start += 4) {
+			all.addAll(read(wordlist, new Shard(start, Math.min(count, start + 4))));
+		}
+		assertEquals(WORDS, all);
+	}
+
+	@Test
+	void openRejectsATruncatedFile() throws IOException {
+		Path binary = directory.resolve("words.bin");
+		BinaryWordlist.convert(write(WORDS), binary, false);
+		try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.WRITE)) {
+			channel.truncate(Files.size(binary) - 1);
+		}
+		assertThrows(IOException.class, () -> BinaryWordlist.open(binary));
+	}
+
+	private Path write(List<String> lines) throws IOException {
+		Path text = directory.resolve("words.txt");
+		Files.write(text, lines, StandardCharsets.UTF_8);
+		return text;
+	}
+
+	private static List<String> read(CandidateSource source, Shard shard) throws IOException {
+		List<String> words = new ArrayList<>();
+		source.forEach(shard, (candidate, offset, length) -> words.add(new String(candidate, offset, length, StandardCharsets.UTF_8)));
+		return words;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointTest {
+
+	private static final String FINGERPRINT = "0123abcd";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsBackWhatWasRecorded() throws IOException {
+		Path file = directory.resolve("job.checkpoint");
+		try (Checkpoint checkpoint = Checkpoint.open(file, FINGERPRINT, Checkpoint.State.empty())) {
+			checkpoint.done(new Shard(0, 100));
+			checkpoint.done(new Shard(200, 300));
+			checkpoint.done(new Shard(100, 150));
+			checkpoint.found("alice", "correct horse");
+			checkpoint.found("bob", "grüezi");
+			checkpoint.found("alice", "ignored, alice is found already");
+			checkpoint.sync();
+		}
+		Checkpoint.State state = Checkpoint.read(file, FINGERPRINT);
+		assertNotNull(state);
+		assertEquals(List.of(new Shard(0, 150), new Shard(200, 300)), state.done().ranges());
+		assertEquals(List.of(Map.entry("alice", "correct horse"), Map.entry("bob", "grüezi")),
+				List.copyOf(state.found().entrySet()));
+	}
+
+	@Test
+	void resumesFromAnEarlierCheckpoint() throws IOException {
+		Path file = directory.resolve("job.checkpoint");
+		try (Checkpoint checkpoint = Checkpoint.open(file, FINGERPRINT, Checkpoint.State.empty())) {
+			checkpoint.done(new Shard(0, 100));
+			checkpoint.found("alice", "secret");
+			checkpoint.sync();
+		}
+		try (Checkpoint checkpoint = Checkpoint.open(file, FINGERPRINT, Checkpoint.read(file, FINGERPRINT))) {
+			checkpoint.done(new Shard(100, 180));
+			checkpoint.found("bob", "hunter2");
+			checkpoint.sync();
+		}
+		Checkpoint.State state = Checkpoint.read(file, FINGERPRINT);
+		assertEquals(List.of(new Shard(0, 180)), state.done().ranges());
+		assertEquals(List.of(new Shard(180, 1000)), state.done().gaps(1000));
+		assertEquals(Map.of("alice", "secret", "bob", "hunter2"), state.found());
+	}
+
+	@Test
+	void ignoresATruncatedLastRecord() throws IOException {
+		Path file = directory.resolve("job.checkpoint");
+		try (Checkpoint checkpoint = Checkpoint.open(file, FINGERPRINT, Checkpoint.State.empty())) {
+			checkpoint.done(new Shard(0, 100));
+			checkpoint.sync();
+		}
+		// A crash while appending "D 100 200\n"
+		Files.writeString(file, "D 100 2", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		Checkpoint.State state = Checkpoint.read(file, FINGERPRINT);
+		assertEquals(List.of(new Shard(0, 100)), state.done().ranges());
+
+		// Resuming drops the torn record from the file
+		try (Checkpoint checkpoint = Checkpoint.open(file, FINGERPRINT, state)) {
+			checkpoint.done(new Shard(100, 200));
+			checkpoint.sync();
+		}
+		assertEquals(List.of(new Shard(0, 200)), Checkpoint.read(file, FINGERPRINT).done().ranges());
+	}
+
+	@Test
+	void ignoresTheCheckpointOfOtherInputs() throws IOException {
+		Path file = directory.resolve("job.checkpoint");
+		assertNull(Checkpoint.read(file, FINGERPRINT));
+		try (Checkpoint checkpoint = Checkpoint.open(file, FINGERPRINT, Checkpoint.State.empty())) {
+			checkpoint.done(new Shard(0, 100));
+			checkpoint.sync();
+		}
+		assertNull(Checkpoint.read(file, "ffff"));
+	}
+
+	@Test
+	void fingerprintDependsOnContentsAndTexts() throws IOException {
+		Path words = directory.resolve("words.txt");
+		Files.writeString(words, "a\nb\n");
+		String plain = Checkpoint.fingerprint(List.of(words));
+		assertEquals(plain, Checkpoint.fingerprint(List.of(words), List.of()));
+		assertNotEquals(plain, Checkpoint.fingerprint(List.of(words), List.of("?d?d")));
+		Files.writeString(words, "a\nc\n");
+		assertNotEquals(plain, Checkpoint.fingerprint(List.of(words)));
+	}
+}
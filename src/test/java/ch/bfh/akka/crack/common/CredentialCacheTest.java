@@ -0,0 +1,114 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CredentialCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void growsAndKeepsEveryEntryAcrossReopening() throws IOException {
+		Path file = directory.resolve("credentials.cache");
+		int entries = 5000; // Several times the initial table
+		try (CredentialCache cache = CredentialCache.open(file)) {
+			long emptySize = Files.size(file);
+			for (int i = 0; i < entries; i++) {
+				cache.put(salt(i), digest(i), "password" + i);
+			}
+			cache.put(salt(7), digest(7), "ignored, the pair is cached already");
+			assertEquals(entries, cache.size());
+			assertTrue(Files.size(file) > emptySize);
+		}
+		try (CredentialCache cache = CredentialCache.open(file)) {
+			assertEquals(entries, cache.size());
+			for (int i = 0; i < entries; i++) {
+				assertEquals("password" + i, cache.get(salt(i), digest(i)));
+			}
+			assertNull(cache.get(salt(entries), digest(entries)));
+			assertNull(cache.get(salt(1), digest(2)));
+		}
+	}
+
+	@Test
+	void aRecordFailingItsChecksumIsMissing() throws IOException {
+		Path file = directory.resolve("credentials.cache");
+		try (CredentialCache cache = CredentialCache.open(file)) {
+			cache.put(salt(1), digest(1), "first");
+			cache.put(salt(2), digest(2), "second");
+		}
+		// Flip the last byte of the password of the last record
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer last = ByteBuffer.allocate(1);
+			channel.read(last, channel.size() - 1);
+			channel.write(ByteBuffer.wrap(new byte[] {(byte) (last.get(0) ^ 1)}), channel.size() - 1);
+		}
+		try (CredentialCache cache = CredentialCache.open(file)) {
+			assertEquals("first", cache.get(salt(1), digest(1)));
+			assertNull(cache.get(salt(2), digest(2)));
+			// The corrupted record is dropped when the table grows
+			for (int i = 3; i < 1000; i++) {
+				cache.put(salt(i), digest(i), "password" + i);
+			}
+			assertEquals(998, cache.size());
+			assertEquals("first", cache.get(salt(1), digest(1)));
+			assertNull(cache.get(salt(2), digest(2)));
+		}
+	}
+
+	@Test
+	void resolveChecksTheCachedPasswords() throws IOException, NoSuchAlgorithmException {
+		MessageDigest sha = MessageDigest.getInstance(HashKernel.SHA_512);
+		byte[] alice = sha.digest("secretpepper".getBytes(StandardCharsets.UTF_8));
+		byte[] bob = sha.digest("hunter2pepper".getBytes(StandardCharsets.UTF_8));
+		Path hashed = directory.resolve("hashed.txt");
+		Files.write(hashed, List.of("alice pepper " + Base64.getEncoder().encodeToString(alice),
+				"bob pepper " + Base64.getEncoder().encodeToString(bob)));
+		TargetIndex targets = TargetIndex.load(hashed.toString(), line -> {});
+		try (CredentialCache cache = CredentialCache.open(directory.resolve("credentials.cache"))) {
+			cache.putAll(targets, "alice", "secret");
+			cache.putAll(targets, "bob", "not the password");
+			assertEquals(1, cache.size());
+			cache.put("pepper".getBytes(StandardCharsets.UTF_8), bob, "not the password either");
+			assertEquals(Map.of("alice", "secret"), cache.resolve(targets));
+		}
+	}
+
+	@Test
+	void rejectsAFileThatIsNotACache() throws IOException {
+		Path file = directory.resolve("words.txt");
+		Files.writeString(file, "password\n123456\n");
+		assertThrows(IOException.class, () -> CredentialCache.open(file));
+	}
+
+	private static byte[] salt(int i) {
+		return ("salt" + (i % 13)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] digest(int i) {
+		return ByteBuffer.allocate(64).putInt(0, i).putInt(60, ~i).array();
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HashKernelTest {
+
+	@Test
+	void midstateHashesLikeMessageDigestForPrefixSaltsOfOneBlockOrMore() throws NoSuchAlgorithmException {
+		Random random = new Random(17);
+		HashKernel kernel = new HashKernel(HashScheme.parse("sha512:prefix"));
+		MessageDigest reference = MessageDigest.getInstance(HashKernel.SHA_512);
+		// Salt tails and candidates on both sides of the 112 byte padding limit and of a block
+		for (int saltLength = ScalarSha512.BLOCK_LENGTH; saltLength <= 3 * ScalarSha512.BLOCK_LENGTH + 20; saltLength += 13) {
+			byte[] salt = new byte[saltLength];
+			random.nextBytes(salt);
+			ScalarSha512.Midstate midstate = kernel.midstate(salt);
+			assertNotNull(midstate);
+			for (int length = 0; length <= 2 * ScalarSha512.BLOCK_LENGTH; length += 7) {
+				byte[] candidate = new byte[length + 5];
+				random.nextBytes(candidate);
+				reference.update(salt);
+				reference.update(candidate, 5, length);
+				assertArrayEquals(reference.digest(), kernel.digest(candidate, 5, length, salt, midstate),
+						"salt of " + saltLength + " bytes, candidate of " + length + " bytes");
+			}
+		}
+	}
+
+	@Test
+	void midstateHashesLikeThePlainPathWithIterations() throws NoSuchAlgorithmException {
+		HashKernel kernel = new HashKernel(HashScheme.parse("sha512:prefix:x5"));
+		byte[] salt = new byte[300];
+		new Random(5).nextBytes(salt);
+		byte[] candidate = "correct horse battery staple".getBytes();
+		byte[] plain = kernel.digest(candidate, 0, candidate.length, salt).clone();
+		assertArrayEquals(plain, kernel.digest(candidate, 0, candidate.length, salt, kernel.midstate(salt)));
+	}
+
+	@Test
+	void midstateOnlyForSha512PrefixSaltsOfAtLeastOneBlock() throws NoSuchAlgorithmException {
+		byte[] block = new byte[ScalarSha512.BLOCK_LENGTH];
+		byte[] shorter = new byte[ScalarSha512.BLOCK_LENGTH - 1];
+		assertNull(new HashKernel(HashScheme.parse("sha512:prefix")).midstate(shorter));
+		assertNull(new HashKernel(HashScheme.parse("sha512:suffix")).midstate(block));
+		assertNull(new HashKernel(HashScheme.parse("sha256:prefix")).midstate(block));
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MaskKeyspaceTest {
+
+	@Test
+	void decodingAtAnyNumberEqualsIncrementingFromZero() {
+		// Positions of radix 3, 10 and 4: incrementing wraps one, two and all positions
+		MaskKeyspace mask = MaskKeyspace.parse("xyz,abcd,?1?d?2");
+		assertEquals(3 * 10 * 4, mask.size());
+		List<String> incremented = read(mask, mask.all());
+		assertEquals(mask.size(), incremented.size());
+		assertEquals(List.of("x0a", "x0b", "x0c", "x0d", "x1a"), incremented.subList(0, 5));
+		assertEquals(List.of("x9d", "y0a"), incremented.subList(39, 41));
+		assertEquals("z9d", incremented.get(incremented.size() - 1));
+		for (int n = 0; n < mask.size(); n++) {
+			assertEquals(List.of(incremented.get(n)), read(mask, new Shard(n, n + 1)), "candidate " + n);
+			assertEquals(incremented.subList(n, (int) mask.size()), read(mask, new Shard(n, mask.size())), "from candidate " + n);
+		}
+	}
+
+	@Test
+	void shardsAreClampedToTheKeyspace() {
+		MaskKeyspace mask = MaskKeyspace.parse("?d?d");
+		assertEquals(0, mask.alignForward(-1));
+		assertEquals(42, mask.alignForward(42));
+		assertEquals(100, mask.alignForward(1000));
+		assertEquals(List.of("98", "99"), read(mask, new Shard(98, 1000)));
+		assertEquals(List.of(), read(mask, new Shard(100, 200)));
+	}
+
+	@Test
+	void parsesCharsetsPlaceholdersAndEscapes() throws IOException {
+		MaskKeyspace mask = MaskKeyspace.parse("a\\,a?d,x??\\,?1");
+		assertEquals(4, mask.length());
+		// ?1 is "a,0123456789", every character once
+		assertEquals(12, mask.size());
+		List<String> candidates = read(mask, mask.all());
+		assertEquals(List.of("x?,a", "x?,,", "x?,0"), candidates.subList(0, 3));
+		assertEquals(26 * 26 * 10, MaskKeyspace.parse("?l?u?d").size());
+		assertEquals(95, MaskKeyspace.parse("?a").size());
+		assertTrue(CandidateSource.open(MaskKeyspace.PREFIX + "?d?d") instanceof MaskKeyspace);
+	}
+
+	@Test
+	void rejectsInvalidMasks() {
+		for (String spec : new String[] {"", "?", "?x", "?1", "a,b,c,d,e,?1", ",?1", "grüezi", "?a?a?a?a?a?a?a?a?a?a?a"}) {
+			assertThrows(IllegalArgumentException.class, () -> MaskKeyspace.parse(spec), spec);
+		}
+	}
+
+	private static List<String> read(MaskKeyspace mask, Shard shard) {
+		List<String> candidates = new ArrayList<>();
+		mask.forEach(shard, (candidate, offset, length) -> candidates.add(new String(candidate, offset, length, StandardCharsets.US_ASCII)));
+		return candidates;
+	}
+}
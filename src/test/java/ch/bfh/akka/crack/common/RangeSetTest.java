@@ -0,0 +1,42 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RangeSetTest {
+
+	@Test
+	void mergesOverlappingAndAdjacentRanges() {
+		RangeSet set = new RangeSet();
+		set.add(new Shard(50, 60));
+		set.add(new Shard(10, 20));
+		set.add(new Shard(20, 30));
+		set.add(new Shard(70, 80));
+		set.add(new Shard(55, 75));
+		set.add(new Shard(40, 40));
+		assertEquals(List.of(new Shard(10, 30), new Shard(50, 80)), set.ranges());
+		assertEquals(50, set.covered());
+		set.add(new Shard(0, 100));
+		assertEquals(List.of(new Shard(0, 100)), set.ranges());
+	}
+
+	@Test
+	void gapsAreTheRangesLeftToDo() {
+		RangeSet set = new RangeSet();
+		assertEquals(List.of(new Shard(0, 100)), set.gaps(100));
+		set.add(new Shard(0, 10));
+		set.add(new Shard(40, 50));
+		set.add(new Shard(90, 120));
+		assertEquals(List.of(new Shard(10, 40), new Shard(50, 90)), set.gaps(100));
+		assertEquals(List.of(new Shard(10, 40)), set.gaps(45));
+		set.add(new Shard(10, 90));
+		assertEquals(List.of(), set.gaps(100));
+	}
+}
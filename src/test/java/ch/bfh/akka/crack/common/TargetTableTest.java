@@ -0,0 +1,93 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TargetTableTest {
+
+	private static final int TARGETS = 10_000;
+	private static final int GROUPS = 7;
+
+	@Test
+	void everyInsertedDigestIsAHit() {
+		Random random = new Random(18);
+		List<HashedPassword> targets = new ArrayList<>();
+		int[] groupOfTarget = new int[TARGETS + 2];
+		for (int id = 0; id < TARGETS; id++) {
+			targets.add(target(random, (id % 3 == 0) ? 32 : 64));
+			groupOfTarget[id] = id % GROUPS;
+		}
+		// The same digest as target 0, in the same group and in another one
+		targets.add(targets.get(0));
+		groupOfTarget[TARGETS] = groupOfTarget[0];
+		targets.add(targets.get(0));
+		groupOfTarget[TARGETS + 1] = groupOfTarget[0] + 1;
+		TargetTable table = new TargetTable(targets, groupOfTarget);
+
+		for (int id = 1; id < TARGETS; id++) {
+			assertEquals(List.of(id), probe(table, groupOfTarget[id], targets.get(id).digest()), "target " + id);
+			assertArrayEquals(targets.get(id).digest(), table.digest(id));
+		}
+		List<Integer> zero = probe(table, groupOfTarget[0], targets.get(0).digest());
+		Collections.sort(zero);
+		assertEquals(List.of(0, TARGETS), zero);
+		assertEquals(List.of(TARGETS + 1), probe(table, groupOfTarget[0] + 1, targets.get(0).digest()));
+	}
+
+	@Test
+	void missesReportNothing() {
+		Random random = new Random(19);
+		List<HashedPassword> targets = new ArrayList<>();
+		int[] groupOfTarget = new int[TARGETS];
+		for (int id = 0; id < TARGETS; id++) {
+			targets.add(target(random, 64));
+			groupOfTarget[id] = id % GROUPS;
+		}
+		TargetTable table = new TargetTable(targets, groupOfTarget);
+		for (int i = 0; i < 100_000; i++) {
+			byte[] digest = new byte[64];
+			random.nextBytes(digest);
+			assertEquals(List.of(), probe(table, i % GROUPS, digest));
+		}
+		for (int id = 0; id < TARGETS; id++) {
+			byte[] digest = targets.get(id).digest();
+			// Another group, the same prefix with another end, or a shorter digest with the same prefix
+			assertEquals(List.of(), probe(table, (groupOfTarget[id] + 1) % GROUPS, digest));
+			byte[] changed = digest.clone();
+			changed[63] ^= 1;
+			assertEquals(List.of(), probe(table, groupOfTarget[id], changed));
+			assertEquals(List.of(), probe(table, groupOfTarget[id], Arrays.copyOf(digest, 32)));
+		}
+	}
+
+	@Test
+	void rejectsMoreThanTheLimitBeforeAllocating() {
+		List<HashedPassword> targets = Collections.nCopies((1 << 25) + 1, target(new Random(20), 64));
+		assertThrows(IllegalArgumentException.class, () -> new TargetTable(targets, new int[0]));
+	}
+
+	private static HashedPassword target(Random random, int digestLength) {
+		byte[] digest = new byte[digestLength];
+		random.nextBytes(digest);
+		return new HashedPassword("user", "salt", new byte[] {'s', 'a', 'l', 't'}, digest, HashScheme.SHA_512);
+	}
+
+	private static List<Integer> probe(TargetTable table, int group, byte[] digest) {
+		List<Integer> ids = new ArrayList<>();
+		table.probe(group, digest, ids::add);
+		return ids;
+	}
+}
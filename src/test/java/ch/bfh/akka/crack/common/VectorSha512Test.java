@@ -0,0 +1,100 @@
+/*
+ * BTI5205 Special Week 2, Berner Fachhochschule, Switzerland
+ * Author: 		Tim Bütler
+ * Disclaimer: 	Artificial Intelligence were in use for some code optimizations
+ */
+package ch.bfh.akka.crack.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VectorSha512Test {
+
+	@Test
+	void hashesLikeMessageDigestForEveryLengthAndSuffixSalt() throws NoSuchAlgorithmException {
+		Random random = new Random(9);
+		VectorSha512 vector = new VectorSha512();
+		MessageDigest reference = MessageDigest.getInstance(HashKernel.SHA_512);
+		byte[] out = new byte[64];
+		for (int saltLength : new int[] {0, 1, 3, 8, 16, 40, VectorSha512.MAX_MESSAGE_LENGTH}) {
+			byte[] salt = new byte[saltLength];
+			random.nextBytes(salt);
+			// Every message length that still fits one block with this salt, one lane at a time
+			List<byte[]> messages = new ArrayList<>();
+			for (int length = 0; length + saltLength <= VectorSha512.MAX_MESSAGE_LENGTH; length++) {
+				byte[] message = new byte[length];
+				random.nextBytes(message);
+				messages.add(message);
+			}
+			for (int first = 0; first < messages.size(); first += vector.lanes()) {
+				int count = Math.min(vector.lanes(), messages.size() - first);
+				for (int lane = 0; lane < count; lane++) {
+					byte[] message = messages.get(first + lane);
+					vector.load(lane, message, 0, message.length, salt);
+				}
+				vector.compute();
+				for (int lane = 0; lane < count; lane++) {
+					byte[] message = messages.get(first + lane);
+					reference.update(message);
+					reference.update(salt);
+					vector.digest(lane, out);
+					assertArrayEquals(reference.digest(), out,
+							"message of " + message.length + " bytes, salt of " + saltLength + " bytes");
+				}
+			}
+		}
+	}
+
+	@Test
+	void rejectsMessagesLongerThanOneBlock() {
+		VectorSha512 vector = new VectorSha512();
+		byte[] salt = new byte[16];
+		byte[] message = new byte[VectorSha512.MAX_MESSAGE_LENGTH - salt.length + 1];
+		assertThrows(IllegalArgumentException.class, () -> vector.load(0, message, 0, message.length, salt));
+	}
+
+	@Test
+	void flushHashesAPartialLaneGroup(@TempDir Path directory) throws IOException, NoSuchAlgorithmException {
+		int lanes = new VectorSha512().lanes();
+		int candidates = 2 * lanes + 1; // The last group holds a single candidate
+		Map<String, String> expected = new HashMap<>();
+		expected.put("first", "word0");
+		expected.put("last", "word" + (candidates - 1));
+		MessageDigest sha = MessageDigest.getInstance(HashKernel.SHA_512);
+		List<String> lines = new ArrayList<>();
+		for (Map.Entry<String, String> target : expected.entrySet()) {
+			byte[] digest = sha.digest((target.getValue() + "salt").getBytes(StandardCharsets.UTF_8));
+			lines.add(target.getKey() + " salt " + Base64.getEncoder().encodeToString(digest));
+		}
+		Path hashed = directory.resolve("hashed.txt");
+		Files.write(hashed, lines);
+
+		Map<String, String> found = new HashMap<>();
+		Cracker cracker = new Cracker(TargetIndex.load(hashed.toString(), line -> {}),
+				(user, candidate, offset, length) -> found.put(user, Cracker.password(candidate, offset, length)),
+				Cracker.Kernel.VECTOR);
+		for (int i = 0; i < candidates; i++) {
+			cracker.accept("word" + i);
+		}
+		assertTrue(found.size() < expected.size(), "the partial group is only hashed by flush()");
+		cracker.flush();
+		assertEquals(expected, found);
+	}
+}